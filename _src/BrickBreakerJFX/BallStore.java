@@ -0,0 +1,78 @@
+package application;
+
+import java.util.Arrays;
+
+// Structure-of-arrays store for every ball in play. Positions and speeds
+// live in parallel primitive arrays so thousands of balls can be stepped
+// in tight loops (and in parallel chunks) without any per-ball objects.
+// The arrays start small and double as balls are added, up to a fixed
+// capacity, so single-ball games stay cheap; re-read them after adding.
+public class BallStore {
+
+    double[] x, y, speedX, speedY;
+    private final int capacity;
+    private int size;
+
+    public BallStore(int initialCapacity, int capacity) {
+        if (initialCapacity < 1 || initialCapacity > capacity) {
+            throw new IllegalArgumentException("initialCapacity must be between 1 and " + capacity + ": " + initialCapacity);
+        }
+        this.capacity = capacity;
+        x = new double[initialCapacity];
+        y = new double[initialCapacity];
+        speedX = new double[initialCapacity];
+        speedY = new double[initialCapacity];
+    }
+
+    // Returns false (dropping the ball) when the store is full
+    public boolean add(double x, double y, double speedX, double speedY) {
+        if (size == capacity) return false;
+        if (size == this.x.length) grow();
+        this.x[size] = x;
+        this.y[size] = y;
+        this.speedX[size] = speedX;
+        this.speedY[size] = speedY;
+        size++;
+        return true;
+    }
+
+    // Swap-removes ball i; iterate downwards when removing during a pass
+    public void remove(int i) {
+        int last = --size;
+        x[i] = x[last];
+        y[i] = y[last];
+        speedX[i] = speedX[last];
+        speedY[i] = speedY[last];
+    }
+
+    private void grow() {
+        int length = Math.min(capacity, x.length * 2);
+        x = Arrays.copyOf(x, length);
+        y = Arrays.copyOf(y, length);
+        speedX = Arrays.copyOf(speedX, length);
+        speedY = Arrays.copyOf(speedY, length);
+    }
+
+    public void scaleSpeed(double factor) {
+        for (int i = 0; i < size; i++) {
+            speedX[i] *= factor;
+            speedY[i] *= factor;
+        }
+    }
+
+    public void clear() {
+        size = 0;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int capacity() {
+        return capacity;
+    }
+
+    public boolean isFull() {
+        return size == capacity;
+    }
+}
@@ -0,0 +1,143 @@
+package application;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+// Evaluates a paddle controller over many seeded headless games, played
+// concurrently with one worker thread per core. Game i always uses seed
+// baseSeed + i, so results do not depend on the thread count or on which
+// worker happened to play which game.
+//
+// Usage: java application.BotFarm [games] [threads] [tracker|idle] [base seed] [max ticks] [--endless]
+public class BotFarm {
+
+    // Totals over all games played by one worker (or, once merged, the farm)
+    public static class Result {
+        long games, totalScore, totalLevel, timedOut;
+        int maxLevel;
+        double seconds;
+
+        void add(GameCore game) {
+            games++;
+            totalScore += game.score();
+            totalLevel += game.level();
+            maxLevel = Math.max(maxLevel, game.level());
+            if (!game.isGameOver()) timedOut++;
+        }
+
+        void merge(Result other) {
+            games += other.games;
+            totalScore += other.totalScore;
+            totalLevel += other.totalLevel;
+            timedOut += other.timedOut;
+            maxLevel = Math.max(maxLevel, other.maxLevel);
+        }
+
+        public long games() {
+            return games;
+        }
+
+        public double gamesPerSecond() {
+            return games / seconds;
+        }
+
+        public double meanScore() {
+            return games == 0 ? 0 : (double) totalScore / games;
+        }
+
+        public double meanLevel() {
+            return games == 0 ? 0 : (double) totalLevel / games;
+        }
+
+        public int maxLevel() {
+            return maxLevel;
+        }
+
+        // Games still running when they hit the tick limit
+        public long timedOut() {
+            return timedOut;
+        }
+    }
+
+    private final Supplier<PaddleController> controllers;
+    private final boolean endless;
+    private final long maxTicks;
+
+    // controllers supplies a fresh controller per game, so stateful
+    // (e.g. learned) controllers never share state between games
+    public BotFarm(Supplier<PaddleController> controllers, boolean endless, long maxTicks) {
+        this.controllers = controllers;
+        this.endless = endless;
+        this.maxTicks = maxTicks;
+    }
+
+    public Result run(long games, int threads, long baseSeed) throws InterruptedException {
+        AtomicLong nextGame = new AtomicLong();
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        long start = System.nanoTime();
+        try {
+            List<Future<Result>> workers = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                workers.add(pool.submit(() -> {
+                    Result result = new Result();
+                    for (long i = nextGame.getAndIncrement(); i < games; i = nextGame.getAndIncrement()) {
+                        result.add(play(baseSeed + i));
+                    }
+                    return result;
+                }));
+            }
+            Result total = new Result();
+            for (Future<Result> worker : workers) {
+                total.merge(worker.get());
+            }
+            total.seconds = (System.nanoTime() - start) / 1e9;
+            return total;
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Bot game failed", e.getCause());
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    // Plays one game to the end (or the tick limit) and returns it
+    public GameCore play(long seed) {
+        GameCore game = new GameCore(seed, endless, 1);
+        game.setParallel(false); // The farm already keeps every core busy
+        PaddleController controller = controllers.get();
+        while (!game.isGameOver() && game.tick() < maxTicks) {
+            game.step(controller.input(game));
+        }
+        return game;
+    }
+
+    static Supplier<PaddleController> controllerNamed(String name) {
+        return switch (name) {
+            case "tracker" -> TrackingController::new;
+            case "idle" -> () -> game -> GameCore.INPUT_NONE;
+            default -> throw new IllegalArgumentException("Unknown controller: " + name + " (expected tracker or idle)");
+        };
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        long games = args.length > 0 ? Long.parseLong(args[0]) : 10_000;
+        int threads = args.length > 1 ? Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors();
+        String controller = args.length > 2 ? args[2] : "tracker";
+        long baseSeed = args.length > 3 ? Long.parseLong(args[3]) : 1;
+        long maxTicks = args.length > 4 ? Long.parseLong(args[4]) : 100_000;
+        boolean endless = args.length > 5 && args[5].equals("--endless");
+
+        BotFarm farm = new BotFarm(controllerNamed(controller), endless, maxTicks);
+        Result result = farm.run(games, threads, baseSeed);
+
+        System.out.printf("%d games of '%s' on %d threads in %.2f s%n", result.games(), controller, threads, result.seconds);
+        System.out.printf("%.1f games/sec%n", result.gamesPerSecond());
+        System.out.printf("Mean score %.1f, mean level %.2f, best level %d, %d hit the %d tick limit%n",
+                result.meanScore(), result.meanLevel(), result.maxLevel(), result.timedOut(), maxTicks);
+    }
+}
@@ -10,60 +10,97 @@ import javafx.scene.paint.Color;
 import javafx.scene.text.Font;
 import javafx.stage.Stage;
 
-import java.util.ArrayList;
-import java.util.List;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+
+import static application.GameCore.*;
 
 public class BrickBreaker extends Application {
 
-    // Game constants
-    private static final int WIDTH = 800;
-    private static final int HEIGHT = 600;
-    private static final int PADDLE_WIDTH_START = 100;
-    private static final int PADDLE_HEIGHT = 15;
-    private static final int BALL_RADIUS = 10;
-    private static final int ROWS_START = 5;
-    private static final int COLS = 10;
-    private static final int BRICK_WIDTH = 70;
-    private static final int BRICK_HEIGHT = 20;
+    // Rendering
+    private static final int BRICK_LAYER_BAND = 8 * (BRICK_HEIGHT + BRICK_SPACING); // Rows pre-drawn above the screen
+    // Past this many rectangles one full clear of the overlay is cheaper
+    // than clearing each of them, so multi-ball frames overflow on purpose
+    private static final int DIRTY_REGION_CAPACITY = 256;
 
     // Game variables
-    private double paddleX = WIDTH / 2 - PADDLE_WIDTH_START / 2;
-    private double ballX = WIDTH / 2, ballY = HEIGHT / 2;
-    private double ballSpeedX = 3, ballSpeedY = 3;
-    private int paddleWidth = PADDLE_WIDTH_START;
-    private boolean[][] bricks;
-    private boolean leftPressed = false, rightPressed = false;
-    private int score = 0;
-    private int level = 1;
-    private boolean gameOver = false;
-
-    // Power-ups
-    private List<PowerUp> powerUps = new ArrayList<>();
+    private GameCore game;
+    private final KeyboardController keyboard = new KeyboardController();
+    private PaddleController controller = keyboard;
+    private InputLog recording;
+    private Path recordingPath;
+
+    // Rendering state
+    private final Font hudFont = new Font(20);
+    private final Font gameOverFont = new Font(50);
+    private final DirtyRegions dirtyRegions = new DirtyRegions(DIRTY_REGION_CAPACITY, WIDTH, HEIGHT);
+    private BrickLayer brickLayer;
+    private int hudScore = -1, hudLevel = -1;
+    private String scoreText, levelText;
+
+    // Bad counts are reported and replaced with the nearest usable one
+    private static int parseBallCount(String text) {
+        int count;
+        try {
+            count = Integer.parseInt(text);
+        } catch (NumberFormatException e) {
+            System.err.println("Ignoring --balls=" + text + ": not a number");
+            return 1;
+        }
+        int clamped = Math.max(1, Math.min(BALL_CAPACITY, count));
+        if (clamped != count) System.err.println("--balls must be between 1 and " + BALL_CAPACITY + ", using " + clamped);
+        return clamped;
+    }
+
+    // A bad seed is reported and a fresh one used instead
+    private static long parseSeed(String text, long fresh) {
+        try {
+            return Long.parseLong(text);
+        } catch (NumberFormatException e) {
+            System.err.println("Ignoring --seed=" + text + ": not a number, using " + fresh);
+            return fresh;
+        }
+    }
 
     @Override
     public void start(Stage stage) {
+        boolean endlessMode = false;
+        int startBalls = 1;
+        long seed = System.nanoTime();
+        for (String arg : getParameters().getRaw()) {
+            if (arg.equals("--endless")) endlessMode = true;
+            else if (arg.startsWith("--balls=")) startBalls = parseBallCount(arg.substring("--balls=".length()));
+            else if (arg.startsWith("--seed=")) seed = parseSeed(arg.substring("--seed=".length()), seed);
+            else if (arg.startsWith("--record=")) recordingPath = Path.of(arg.substring("--record=".length()));
+            else if (arg.equals("--autopilot")) controller = new TrackingController();
+        }
+
         // Initialize the game
-        initializeBricks();
+        game = new GameCore(seed, endlessMode, startBalls);
+        if (recordingPath != null) recording = InputLog.forGame(game);
 
-        // Create the canvas and graphics context
+        // Bricks get their own cached canvas underneath; everything that moves
+        // is drawn on a transparent canvas on top
+        brickLayer = new BrickLayer();
         Canvas canvas = new Canvas(WIDTH, HEIGHT);
         GraphicsContext gc = canvas.getGraphicsContext2D();
 
-        // Create a root group and add the canvas to it
-        Group root = new Group(canvas);
-        Scene scene = new Scene(root);
+        // Create a root group and add the canvases to it
+        Group root = new Group(brickLayer.canvas, canvas);
+        Scene scene = new Scene(root, WIDTH, HEIGHT);
 
         // Set up key event listeners
         scene.setOnKeyPressed(event -> {
             switch (event.getCode()) {
-                case LEFT -> leftPressed = true;
-                case RIGHT -> rightPressed = true;
+                case LEFT -> keyboard.setLeftPressed(true);
+                case RIGHT -> keyboard.setRightPressed(true);
             }
         });
         scene.setOnKeyReleased(event -> {
             switch (event.getCode()) {
-                case LEFT -> leftPressed = false;
-                case RIGHT -> rightPressed = false;
+                case LEFT -> keyboard.setLeftPressed(false);
+                case RIGHT -> keyboard.setRightPressed(false);
             }
         });
 
@@ -82,174 +119,161 @@ public class BrickBreaker extends Application {
         }.start();
     }
 
-    private void initializeBricks() {
-        int rows = ROWS_START + (level - 1); // Add more rows as levels increase
-        bricks = new boolean[rows][COLS];
-        for (int row = 0; row < rows; row++) {
-            for (int col = 0; col < COLS; col++) {
-                bricks[row][col] = true;
-            }
-        }
-    }
-
     private void update() {
-        if (gameOver) return;
-
-        // Move paddle
-        if (leftPressed) paddleX -= 5;
-        if (rightPressed) paddleX += 5;
-        paddleX = Math.max(0, Math.min(WIDTH - paddleWidth, paddleX));
-
-        // Move ball
-        ballX += ballSpeedX;
-        ballY += ballSpeedY;
-
-        // Ball collision with walls
-        if (ballX <= 0 || ballX >= WIDTH - BALL_RADIUS) ballSpeedX *= -1;
-        if (ballY <= 0) ballSpeedY *= -1;
-
-        // Ball collision with paddle
-        if (ballY >= HEIGHT - PADDLE_HEIGHT - BALL_RADIUS &&
-                ballX + BALL_RADIUS > paddleX &&
-                ballX < paddleX + paddleWidth) {
-            ballSpeedY *= -1;
-        }
-
-        // Ball collision with bricks
-        outerLoop:
-        for (int row = 0; row < bricks.length; row++) {
-            for (int col = 0; col < COLS; col++) {
-                if (bricks[row][col]) {
-                    double brickX = col * (BRICK_WIDTH + 5) + 35;
-                    double brickY = row * (BRICK_HEIGHT + 5) + 50;
-
-                    if (ballX + BALL_RADIUS > brickX &&
-                            ballX < brickX + BRICK_WIDTH &&
-                            ballY + BALL_RADIUS > brickY &&
-                            ballY < brickY + BRICK_HEIGHT) {
-                        bricks[row][col] = false; // Destroy brick
-                        ballSpeedY *= -1; // Reverse ball direction
-                        score += 10; // Increment score
-
-                        // Randomly spawn a power-up
-                        if (Math.random() < 0.3) {
-                            powerUps.add(new PowerUp(brickX + BRICK_WIDTH / 2, brickY + BRICK_HEIGHT / 2));
-                        }
-
-                        break outerLoop;
-                    }
-                }
-            }
-        }
-
-        // Handle power-ups
-        for (PowerUp powerUp : powerUps) {
-            if (powerUp.active) {
-                powerUp.fall();
-                if (powerUp.isCollected(paddleX, paddleWidth)) {
-                    paddleWidth += 30; // Expand paddle
-                    powerUp.active = false;
-                }
-            }
-        }
-
-        // Game over condition
-        if (ballY > HEIGHT) {
-            gameOver = true;
-        }
-
-        // Check for level completion
-        checkLevelProgress();
+        if (game.isGameOver()) return;
+        int input = controller.input(game);
+        if (recording != null) recording.record(input);
+        game.step(input);
+        if (game.isGameOver()) saveRecording();
     }
 
-    private void checkLevelProgress() {
-        boolean allBricksCleared = true;
-        for (boolean[] row : bricks) {
-            for (boolean brick : row) {
-                if (brick) {
-                    allBricksCleared = false;
-                    break;
-                }
-            }
-        }
+    @Override
+    public void stop() {
+        saveRecording();
+    }
 
-        if (allBricksCleared) {
-            level++;
-            ballSpeedX *= 1.2; // Increase ball speed
-            ballSpeedY *= 1.2;
-            paddleWidth = PADDLE_WIDTH_START; // Reset paddle width
-            initializeBricks(); // Load next level bricks
+    private void saveRecording() {
+        if (recording == null) return;
+        recording.recordOutcome(game);
+        try {
+            recording.save(recordingPath);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not save input log to " + recordingPath, e);
         }
     }
 
     private void render(GraphicsContext gc) {
-        // Clear the canvas
-        gc.clearRect(0, 0, WIDTH, HEIGHT);
+        // Bring the cached brick layer up to date (usually a no-op)
+        brickLayer.sync();
+
+        // Erase only what was drawn last frame
+        dirtyRegions.clear(gc);
 
         // Draw paddle
         gc.setFill(Color.BLUE);
-        gc.fillRect(paddleX, HEIGHT - PADDLE_HEIGHT, paddleWidth, PADDLE_HEIGHT);
+        double paddleX = game.paddleX();
+        gc.fillRect(paddleX, HEIGHT - PADDLE_HEIGHT, game.paddleWidth(), PADDLE_HEIGHT);
+        dirtyRegions.add(paddleX, HEIGHT - PADDLE_HEIGHT, game.paddleWidth(), PADDLE_HEIGHT);
 
-        // Draw ball
+        // Draw balls
+        BallStore balls = game.balls();
         gc.setFill(Color.RED);
-        gc.fillOval(ballX, ballY, BALL_RADIUS, BALL_RADIUS);
-
-        // Draw bricks
-        gc.setFill(Color.GREEN);
-        for (int row = 0; row < bricks.length; row++) {
-            for (int col = 0; col < COLS; col++) {
-                if (bricks[row][col]) {
-                    double brickX = col * (BRICK_WIDTH + 5) + 35;
-                    double brickY = row * (BRICK_HEIGHT + 5) + 50;
-                    gc.fillRect(brickX, brickY, BRICK_WIDTH, BRICK_HEIGHT);
-                }
-            }
+        for (int i = 0; i < balls.size(); i++) {
+            gc.fillOval(balls.x[i], balls.y[i], BALL_RADIUS, BALL_RADIUS);
+            dirtyRegions.add(balls.x[i], balls.y[i], BALL_RADIUS, BALL_RADIUS);
         }
 
         // Draw power-ups
-        gc.setFill(Color.ORANGE);
-        for (PowerUp powerUp : powerUps) {
-            if (powerUp.active) {
-                gc.fillOval(powerUp.x, powerUp.y, powerUp.size, powerUp.size);
-            }
+        PowerUpPool powerUps = game.powerUps();
+        for (int i = 0; i < powerUps.size(); i++) {
+            gc.setFill(powerUpColor(powerUps.type(i)));
+            gc.fillOval(powerUps.x(i), powerUps.y(i), POWER_UP_SIZE, POWER_UP_SIZE);
+            dirtyRegions.add(powerUps.x(i), powerUps.y(i), POWER_UP_SIZE, POWER_UP_SIZE);
         }
 
-        // Draw score and level
+        // Draw score and level, rebuilding the strings only when they change
+        if (game.score() != hudScore) {
+            hudScore = game.score();
+            scoreText = "Score: " + hudScore;
+        }
+        if (game.level() != hudLevel) {
+            hudLevel = game.level();
+            levelText = "Level: " + hudLevel;
+        }
         gc.setFill(Color.BLACK);
-        gc.setFont(new Font(20));
-        gc.fillText("Score: " + score, 10, 20);
-        gc.fillText("Level: " + level, WIDTH - 100, 20);
+        gc.setFont(hudFont);
+        gc.fillText(scoreText, 10, 20);
+        gc.fillText(levelText, WIDTH - 100, 20);
+        dirtyRegions.add(0, 0, WIDTH, 30);
 
         // Draw Game Over
-        if (gameOver) {
+        if (game.isGameOver()) {
             gc.setFill(Color.RED);
-            gc.setFont(new Font(50));
+            gc.setFont(gameOverFont);
             gc.fillText("Game Over!", WIDTH / 2 - 150, HEIGHT / 2);
+            dirtyRegions.add(WIDTH / 2 - 150, HEIGHT / 2 - 50, 300, 65);
         }
     }
 
+    private static Color powerUpColor(PowerUpType type) {
+        return switch (type) {
+            case WIDE_PADDLE -> Color.ORANGE;
+            case SLOW_BALL -> Color.CYAN;
+            case SPLIT_BALL -> Color.MAGENTA;
+            case BONUS_POINTS -> Color.YELLOW;
+        };
+    }
+
     public static void main(String[] args) {
-        launch();
+        launch(args);
     }
 
-    // PowerUp class
-    class PowerUp {
-        double x, y, size = 20;
-        boolean active = true;
+    // Bricks drawn once onto their own canvas. The canvas is BRICK_LAYER_BAND
+    // taller than the screen and starts that far above it, so a scrolling
+    // field just slides it down with translateY and only redraws once the
+    // band is used up. Destroyed bricks are erased individually and a full
+    // redraw only happens when a new level is loaded.
+    class BrickLayer {
+        final Canvas canvas = new Canvas(WIDTH, HEIGHT + BRICK_LAYER_BAND);
+        private final GraphicsContext gc = canvas.getGraphicsContext2D();
+        private final long[] drawnMasks = new long[(HEIGHT + BRICK_LAYER_BAND) / (BRICK_HEIGHT + BRICK_SPACING) + 2];
+        private int firstDrawnRow, drawnRowCount;
+        private int drawnVersion, drawnLayout = -1;
+        private double anchorOffsetY;
+
+        BrickLayer() {
+            canvas.setLayoutY(-BRICK_LAYER_BAND);
+        }
 
-        PowerUp(double x, double y) {
-            this.x = x;
-            this.y = y;
+        void sync() {
+            BrickField bricks = game.bricks();
+            double drift = game.fieldOffsetY() - anchorOffsetY;
+            if (bricks.layoutVersion() != drawnLayout || drift < 0 || drift >= BRICK_LAYER_BAND) {
+                redraw(bricks);
+            } else {
+                canvas.setTranslateY(drift);
+                if (bricks.version() != drawnVersion) eraseDestroyed(bricks);
+            }
         }
 
-        void fall() {
-            y += 0.5; // Move down
+        private void redraw(BrickField bricks) {
+            anchorOffsetY = game.fieldOffsetY();
+            canvas.setTranslateY(0);
+            gc.clearRect(0, 0, WIDTH, HEIGHT + BRICK_LAYER_BAND);
+            gc.setFill(Color.GREEN);
+
+            firstDrawnRow = Math.max(0, game.rowAt(-BRICK_LAYER_BAND));
+            int lastRow = Math.min(bricks.rows() - 1, game.rowAt(HEIGHT));
+            drawnRowCount = Math.max(0, lastRow - firstDrawnRow + 1);
+            for (int i = 0; i < drawnRowCount; i++) {
+                int row = firstDrawnRow + i;
+                long mask = bricks.rowMask(row);
+                drawnMasks[i] = mask;
+                double y = game.brickY(row) + BRICK_LAYER_BAND;
+                while (mask != 0) {
+                    int col = Long.numberOfTrailingZeros(mask);
+                    mask &= mask - 1;
+                    gc.fillRect(game.brickX(col), y, BRICK_WIDTH, BRICK_HEIGHT);
+                }
+            }
+            drawnVersion = bricks.version();
+            drawnLayout = bricks.layoutVersion();
         }
 
-        boolean isCollected(double paddleX, double paddleWidth) {
-            return y + size >= HEIGHT - PADDLE_HEIGHT &&
-                    x + size > paddleX &&
-                    x < paddleX + paddleWidth;
+        private void eraseDestroyed(BrickField bricks) {
+            for (int i = 0; i < drawnRowCount; i++) {
+                int row = firstDrawnRow + i;
+                long gone = drawnMasks[i] & ~bricks.rowMask(row);
+                if (gone == 0) continue;
+                drawnMasks[i] &= ~gone;
+                double y = row * (BRICK_HEIGHT + BRICK_SPACING) + FIELD_TOP + anchorOffsetY + BRICK_LAYER_BAND;
+                while (gone != 0) {
+                    int col = Long.numberOfTrailingZeros(gone);
+                    gone &= gone - 1;
+                    gc.clearRect(game.brickX(col), y, BRICK_WIDTH, BRICK_HEIGHT);
+                }
+            }
+            drawnVersion = bricks.version();
         }
     }
 }
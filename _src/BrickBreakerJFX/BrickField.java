@@ -0,0 +1,137 @@
+package application;
+
+import java.util.Random;
+
+// Bit-packed brick layout: one long mask per row (bit col set = brick alive).
+// Keeps a running live-brick count so level-complete checks are O(1), and
+// tracks the highest-index occupied row (the one nearest the paddle) so
+// scrolling levels can find their front.
+public class BrickField {
+
+    public static final int MAX_COLS = Long.SIZE;
+
+    private final int cols;
+    private final long fullRow;
+    private long[] rows = new long[0];
+    private int rowCount;
+    private int liveCount;
+    private int highestLiveRow = -1;
+    private int version;
+    private int layoutVersion;
+
+    public BrickField(int cols) {
+        if (cols < 1 || cols > MAX_COLS) {
+            throw new IllegalArgumentException("cols must be between 1 and " + MAX_COLS + ": " + cols);
+        }
+        this.cols = cols;
+        this.fullRow = cols == MAX_COLS ? -1L : (1L << cols) - 1;
+    }
+
+    // Fills every cell of the given number of rows (the classic layout)
+    public void fill(int rowCount) {
+        resize(rowCount);
+        for (int row = 0; row < rowCount; row++) {
+            rows[row] = fullRow;
+        }
+        liveCount = rowCount * cols;
+        highestLiveRow = rowCount - 1;
+        version++;
+        layoutVersion++;
+    }
+
+    // Procedurally generates a layout. The same seed always yields the same
+    // field; density is the chance that any single cell holds a brick.
+    public void generate(int rowCount, long seed, double density) {
+        resize(rowCount);
+        Random random = new Random(seed);
+        liveCount = 0;
+        for (int row = 0; row < rowCount; row++) {
+            long mask = 0;
+            for (int col = 0; col < cols; col++) {
+                if (random.nextDouble() < density) mask |= 1L << col;
+            }
+            // Occasionally leave a gap row to give the player breathing room
+            if (random.nextInt(16) == 0) mask = 0;
+            rows[row] = mask;
+            liveCount += Long.bitCount(mask);
+        }
+        // Never hand out an empty level
+        if (liveCount == 0 && rowCount > 0) {
+            rows[0] = fullRow;
+            liveCount = cols;
+        }
+        highestLiveRow = rowCount - 1;
+        settleHighestLiveRow();
+        version++;
+        layoutVersion++;
+    }
+
+    private void resize(int rowCount) {
+        if (rowCount < 0) throw new IllegalArgumentException("rowCount must not be negative: " + rowCount);
+        if (rows.length < rowCount) rows = new long[rowCount];
+        for (int row = rowCount; row < this.rowCount; row++) {
+            rows[row] = 0;
+        }
+        this.rowCount = rowCount;
+    }
+
+    public boolean isAlive(int row, int col) {
+        return row >= 0 && row < rowCount && col >= 0 && col < cols && (rows[row] & (1L << col)) != 0;
+    }
+
+    // Removes a brick, returning false if there was nothing to remove
+    public boolean destroy(int row, int col) {
+        if (!isAlive(row, col)) return false;
+        rows[row] &= ~(1L << col);
+        liveCount--;
+        if (row == highestLiveRow) settleHighestLiveRow();
+        version++;
+        return true;
+    }
+
+    private void settleHighestLiveRow() {
+        while (highestLiveRow >= 0 && rows[highestLiveRow] == 0) {
+            highestLiveRow--;
+        }
+    }
+
+    public long rowMask(int row) {
+        return row >= 0 && row < rowCount ? rows[row] : 0;
+    }
+
+    public boolean isRowEmpty(int row) {
+        return rowMask(row) == 0;
+    }
+
+    public boolean isCleared() {
+        return liveCount == 0;
+    }
+
+    public int liveCount() {
+        return liveCount;
+    }
+
+    // Highest row index that still holds a brick, or -1 when cleared
+    public int highestLiveRow() {
+        return highestLiveRow;
+    }
+
+    public int rows() {
+        return rowCount;
+    }
+
+    public int cols() {
+        return cols;
+    }
+
+    // Bumped on every change, so observers (e.g. renderers) can skip work
+    // when nothing happened since they last looked
+    public int version() {
+        return version;
+    }
+
+    // Bumped only when a whole new layout is loaded
+    public int layoutVersion() {
+        return layoutVersion;
+    }
+}
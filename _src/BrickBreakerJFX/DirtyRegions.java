@@ -0,0 +1,48 @@
+package application;
+
+import javafx.scene.canvas.GraphicsContext;
+
+// Remembers the rectangles drawn on a transparent overlay canvas during one
+// frame so the next frame can clear just those instead of the whole canvas.
+// When more rectangles are drawn than it has room for, it falls back to a
+// single full clear.
+public class DirtyRegions {
+
+    private static final double PAD = 1; // Covers anti-aliased edges of ovals and text
+
+    private final double[] rects;
+    private final double width, height;
+    private int count;
+    private boolean overflowed = true; // First frame clears everything
+
+    public DirtyRegions(int capacity, double width, double height) {
+        this.rects = new double[capacity * 4];
+        this.width = width;
+        this.height = height;
+    }
+
+    public void add(double x, double y, double w, double h) {
+        if (overflowed) return;
+        if (count == rects.length) {
+            overflowed = true;
+            return;
+        }
+        rects[count++] = x - PAD;
+        rects[count++] = y - PAD;
+        rects[count++] = w + 2 * PAD;
+        rects[count++] = h + 2 * PAD;
+    }
+
+    // Clears everything recorded since the last call and starts a new frame
+    public void clear(GraphicsContext gc) {
+        if (overflowed) {
+            gc.clearRect(0, 0, width, height);
+        } else {
+            for (int i = 0; i < count; i += 4) {
+                gc.clearRect(rects[i], rects[i + 1], rects[i + 2], rects[i + 3]);
+            }
+        }
+        count = 0;
+        overflowed = false;
+    }
+}
@@ -0,0 +1,374 @@
+package application;
+
+import java.util.SplittableRandom;
+import java.util.function.IntConsumer;
+import java.util.stream.IntStream;
+
+// The whole Brick Breaker simulation without any JavaFX: bricks, balls,
+// paddle, power-ups, score and levels. All randomness comes from a seeded
+// generator and the only input is the paddle bits passed to step(), so a
+// seed plus the per-tick inputs reproduce a game exactly, with or without
+// a window.
+public class GameCore {
+
+    // Game constants
+    public static final int WIDTH = 800;
+    public static final int HEIGHT = 600;
+    public static final int PADDLE_WIDTH_START = 100;
+    public static final int PADDLE_HEIGHT = 15;
+    public static final int BALL_RADIUS = 10;
+    public static final int ROWS_START = 5;
+    public static final int COLS = 10;
+    public static final int BRICK_WIDTH = 70;
+    public static final int BRICK_HEIGHT = 20;
+    public static final int BRICK_SPACING = 5;
+    public static final int FIELD_LEFT = 35;
+    public static final int FIELD_TOP = 50;
+
+    // Endless mode: a tall procedurally generated field that scrolls down
+    private static final int ENDLESS_ROWS = 2000;
+    private static final double ENDLESS_DENSITY = 0.6;
+    private static final double SCROLL_SPEED = 0.2;
+    private static final long ENDLESS_SEED = 0x5EEDL;
+
+    // Power-ups
+    public static final double POWER_UP_SIZE = 20;
+    public static final int POWER_UP_CAPACITY = 64;
+    private static final double POWER_UP_FALL_SPEED = 0.5;
+    private static final int WIDE_PADDLE_BONUS = 30;
+    private static final double SLOW_BALL_FACTOR = 0.6;
+    private static final int BONUS_POINTS = 50;
+
+    // Multi-ball
+    public static final int BALL_CAPACITY = 16384;
+    private static final int BALL_CHUNK = 1024; // Balls per parallel work unit
+    private static final int BALL_INITIAL_CAPACITY = 16; // Grown on demand up to BALL_CAPACITY
+    private static final int NO_HIT = -1;
+
+    // Paddle input bits for step()
+    public static final int INPUT_NONE = 0;
+    public static final int INPUT_LEFT = 1;
+    public static final int INPUT_RIGHT = 2;
+
+    // Game variables
+    private final long seed;
+    private final boolean endlessMode;
+    private final int startBalls;
+    private final SplittableRandom random;
+    private double paddleX = WIDTH / 2 - PADDLE_WIDTH_START / 2;
+    private final BallStore balls;
+    private int[] ballHits; // Brick cell (row * COLS + col) each ball hit this tick, grown with balls
+    private final IntConsumer moveChunk;
+    private int paddleWidth = PADDLE_WIDTH_START;
+    private double ballSpeedFactor = 1;
+    private final BrickField bricks = new BrickField(COLS);
+    private double fieldOffsetY = 0;
+    private int score = 0;
+    private int level = 1;
+    private long tick = 0;
+    private boolean gameOver = false;
+    private boolean parallel = true;
+
+    // Power-ups
+    private final PowerUpPool powerUps = new PowerUpPool(POWER_UP_CAPACITY);
+    private final int[] effectTicks = new int[PowerUpType.COUNT]; // Remaining ticks per timed effect
+
+    public GameCore(long seed, boolean endlessMode, int startBalls) {
+        if (startBalls < 1 || startBalls > BALL_CAPACITY) {
+            throw new IllegalArgumentException("startBalls must be between 1 and " + BALL_CAPACITY + ": " + startBalls);
+        }
+        this.seed = seed;
+        this.endlessMode = endlessMode;
+        this.startBalls = startBalls;
+        this.random = new SplittableRandom(seed);
+        this.balls = new BallStore(Math.max(startBalls, BALL_INITIAL_CAPACITY), BALL_CAPACITY);
+        this.ballHits = new int[balls.x.length];
+        this.moveChunk = chunk -> moveBalls(chunk * BALL_CHUNK, Math.min(balls.size(), (chunk + 1) * BALL_CHUNK));
+        initializeBalls(startBalls);
+        initializeBricks();
+    }
+
+    private void initializeBricks() {
+        if (endlessMode) {
+            bricks.generate(ENDLESS_ROWS, ENDLESS_SEED + level, ENDLESS_DENSITY);
+            // Start with only the bottom rows on screen; the rest scroll in from above
+            fieldOffsetY = -(ENDLESS_ROWS - ROWS_START) * (BRICK_HEIGHT + BRICK_SPACING);
+        } else {
+            bricks.fill(ROWS_START + (level - 1)); // Add more rows as levels increase
+            fieldOffsetY = 0;
+        }
+    }
+
+    // The first ball starts where the single ball always did; extra balls (for
+    // stress testing) fan out around it with evenly spread angles. StrictMath
+    // gives the same bits on every JVM, so recordings replay anywhere.
+    private void initializeBalls(int count) {
+        balls.clear();
+        balls.add(WIDTH / 2, HEIGHT / 2, 3, 3);
+        for (int i = 1; i < count && !balls.isFull(); i++) {
+            double angle = Math.PI * (0.15 + 0.7 * i / count);
+            double speed = StrictMath.sqrt(18);
+            balls.add(WIDTH / 2 + (i % 200) - 100, HEIGHT / 2 + (i % 50),
+                    speed * StrictMath.cos(angle), -speed * StrictMath.sin(angle));
+        }
+    }
+
+    public double brickX(int col) {
+        return col * (BRICK_WIDTH + BRICK_SPACING) + FIELD_LEFT;
+    }
+
+    public double brickY(int row) {
+        return row * (BRICK_HEIGHT + BRICK_SPACING) + FIELD_TOP + fieldOffsetY;
+    }
+
+    // Row index whose slot contains the given screen y (may be out of range)
+    public int rowAt(double y) {
+        return (int) Math.floor((y - FIELD_TOP - fieldOffsetY) / (BRICK_HEIGHT + BRICK_SPACING));
+    }
+
+    public int colAt(double x) {
+        return (int) Math.floor((x - FIELD_LEFT) / (BRICK_WIDTH + BRICK_SPACING));
+    }
+
+    // Advances the game by one tick with the given INPUT_* bits held down
+    public void step(int input) {
+        if (gameOver) return;
+        tick++;
+
+        // Move paddle
+        if ((input & INPUT_LEFT) != 0) paddleX -= 5;
+        if ((input & INPUT_RIGHT) != 0) paddleX += 5;
+        paddleX = Math.max(0, Math.min(WIDTH - paddleWidth, paddleX));
+
+        // Scroll the endless field towards the paddle
+        if (endlessMode) {
+            fieldOffsetY += SCROLL_SPEED;
+            int front = bricks.highestLiveRow();
+            if (front >= 0 && brickY(front) + BRICK_HEIGHT >= HEIGHT - PADDLE_HEIGHT) {
+                gameOver = true;
+                return;
+            }
+        }
+
+        // Move every ball and find the brick it hits. Balls only read shared
+        // state here, so large counts are split into chunks run in parallel.
+        int ballCount = balls.size();
+        if (ballHits.length < ballCount) ballHits = new int[balls.x.length];
+        if (parallel && ballCount > BALL_CHUNK) {
+            IntStream.range(0, (ballCount + BALL_CHUNK - 1) / BALL_CHUNK).parallel().forEach(moveChunk);
+        } else {
+            moveBalls(0, ballCount);
+        }
+
+        // Resolve brick hits in ball order so the outcome is deterministic:
+        // when several balls hit the same brick, the lowest-numbered ball
+        // breaks it and scores, and every one of them bounces off.
+        for (int i = 0; i < ballCount; i++) {
+            int cell = ballHits[i];
+            if (cell == NO_HIT) continue;
+            balls.speedY[i] *= -1; // Reverse ball direction
+            int row = cell / COLS, col = cell % COLS;
+            if (bricks.destroy(row, col)) { // Destroy brick
+                score += 10; // Increment score
+
+                // Randomly spawn a power-up
+                if (random.nextDouble() < 0.3) {
+                    PowerUpType type = PowerUpType.VALUES[random.nextInt(PowerUpType.COUNT)];
+                    powerUps.spawn(brickX(col) + BRICK_WIDTH / 2, brickY(row) + BRICK_HEIGHT / 2, type);
+                }
+            }
+        }
+
+        // Balls that fell past the paddle are out of play
+        for (int i = ballCount - 1; i >= 0; i--) {
+            if (balls.y[i] > HEIGHT) balls.remove(i);
+        }
+
+        // Handle power-ups: collected or missed ones are retired from the pool
+        powerUps.fall(POWER_UP_FALL_SPEED);
+        for (int i = powerUps.size() - 1; i >= 0; i--) {
+            double x = powerUps.x(i), y = powerUps.y(i);
+            if (y + POWER_UP_SIZE >= HEIGHT - PADDLE_HEIGHT &&
+                    x + POWER_UP_SIZE > paddleX &&
+                    x < paddleX + paddleWidth) {
+                activate(powerUps.type(i));
+                powerUps.remove(i);
+            } else if (y > HEIGHT) {
+                powerUps.remove(i);
+            }
+        }
+        tickEffects();
+
+        // Game over condition
+        if (balls.size() == 0) {
+            gameOver = true;
+        }
+
+        // Check for level completion
+        checkLevelProgress();
+    }
+
+    // Moves balls [from, to) and records the brick each one hits in ballHits
+    private void moveBalls(int from, int to) {
+        double[] xs = balls.x, ys = balls.y, speedXs = balls.speedX, speedYs = balls.speedY;
+        for (int i = from; i < to; i++) {
+            // Move ball
+            double ballX = xs[i] + speedXs[i] * ballSpeedFactor;
+            double ballY = ys[i] + speedYs[i] * ballSpeedFactor;
+            xs[i] = ballX;
+            ys[i] = ballY;
+
+            // Ball collision with walls
+            if (ballX <= 0 || ballX >= WIDTH - BALL_RADIUS) speedXs[i] *= -1;
+            if (ballY <= 0) speedYs[i] *= -1;
+
+            // Ball collision with paddle
+            if (ballY >= HEIGHT - PADDLE_HEIGHT - BALL_RADIUS &&
+                    ballX + BALL_RADIUS > paddleX &&
+                    ballX < paddleX + paddleWidth) {
+                speedYs[i] *= -1;
+            }
+
+            ballHits[i] = findHit(ballX, ballY);
+        }
+    }
+
+    // First live brick (row-major) overlapping the ball, as row * COLS + col.
+    // Only the cells around the ball can be hit, so only those are checked.
+    private int findHit(double ballX, double ballY) {
+        int firstRow = Math.max(0, rowAt(ballY) - 1);
+        int lastRow = Math.min(bricks.rows() - 1, rowAt(ballY + BALL_RADIUS));
+        int firstCol = Math.max(0, colAt(ballX) - 1);
+        int lastCol = Math.min(COLS - 1, colAt(ballX + BALL_RADIUS));
+        for (int row = firstRow; row <= lastRow; row++) {
+            if (bricks.isRowEmpty(row)) continue;
+            for (int col = firstCol; col <= lastCol; col++) {
+                if (bricks.isAlive(row, col)) {
+                    double brickX = brickX(col);
+                    double brickY = brickY(row);
+
+                    if (ballX + BALL_RADIUS > brickX &&
+                            ballX < brickX + BRICK_WIDTH &&
+                            ballY + BALL_RADIUS > brickY &&
+                            ballY < brickY + BRICK_HEIGHT) {
+                        return row * COLS + col;
+                    }
+                }
+            }
+        }
+        return NO_HIT;
+    }
+
+    // Every ball in play gets a twin heading the mirrored way, up to capacity
+    private void splitBalls() {
+        int count = balls.size();
+        for (int i = 0; i < count && !balls.isFull(); i++) {
+            balls.add(balls.x[i], balls.y[i], -balls.speedX[i], balls.speedY[i]);
+        }
+    }
+
+    private void activate(PowerUpType type) {
+        if (type == PowerUpType.BONUS_POINTS) {
+            score += BONUS_POINTS;
+            return;
+        }
+        if (type == PowerUpType.SPLIT_BALL) {
+            splitBalls();
+            return;
+        }
+        // Collecting an active effect again just refreshes its timer
+        effectTicks[type.ordinal()] = type.durationTicks;
+        applyEffects();
+    }
+
+    private void tickEffects() {
+        boolean expired = false;
+        for (int i = 0; i < effectTicks.length; i++) {
+            if (effectTicks[i] > 0 && --effectTicks[i] == 0) expired = true;
+        }
+        if (expired) applyEffects();
+    }
+
+    private void clearEffects() {
+        for (int i = 0; i < effectTicks.length; i++) {
+            effectTicks[i] = 0;
+        }
+        applyEffects();
+    }
+
+    // Derives paddle width and ball speed from the currently running effects
+    private void applyEffects() {
+        paddleWidth = PADDLE_WIDTH_START + (effectTicks[PowerUpType.WIDE_PADDLE.ordinal()] > 0 ? WIDE_PADDLE_BONUS : 0);
+        paddleX = Math.max(0, Math.min(WIDTH - paddleWidth, paddleX));
+        ballSpeedFactor = effectTicks[PowerUpType.SLOW_BALL.ordinal()] > 0 ? SLOW_BALL_FACTOR : 1;
+    }
+
+    private void checkLevelProgress() {
+        if (bricks.isCleared()) {
+            level++;
+            balls.scaleSpeed(1.2); // Increase ball speed
+            clearEffects(); // Reset paddle width and ball speed
+            powerUps.clear();
+            initializeBricks(); // Load next level bricks
+        }
+    }
+
+    // Whether big multi-ball updates may fan out over the common fork-join
+    // pool. Turn off when many games already run side by side; the outcome
+    // is the same either way.
+    public void setParallel(boolean parallel) {
+        this.parallel = parallel;
+    }
+
+    public long seed() {
+        return seed;
+    }
+
+    public boolean isEndless() {
+        return endlessMode;
+    }
+
+    public int startBalls() {
+        return startBalls;
+    }
+
+    public double paddleX() {
+        return paddleX;
+    }
+
+    public int paddleWidth() {
+        return paddleWidth;
+    }
+
+    public double fieldOffsetY() {
+        return fieldOffsetY;
+    }
+
+    public BallStore balls() {
+        return balls;
+    }
+
+    public BrickField bricks() {
+        return bricks;
+    }
+
+    public PowerUpPool powerUps() {
+        return powerUps;
+    }
+
+    public int score() {
+        return score;
+    }
+
+    public int level() {
+        return level;
+    }
+
+    public long tick() {
+        return tick;
+    }
+
+    public boolean isGameOver() {
+        return gameOver;
+    }
+}
@@ -0,0 +1,134 @@
+package application;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+// Per-tick paddle inputs of one game, run-length encoded: each run is a
+// single int holding the input bits in the low byte and the number of
+// consecutive ticks they were held above it. Holding a key for a whole
+// level costs 4 bytes. Together with the seed and mode stored in the
+// header this is enough for GameCore to replay the game exactly.
+public class InputLog {
+
+    private static final int MAGIC = 0x42424C47; // "BBLG"
+    private static final int FORMAT_VERSION = 1;
+    private static final int INPUT_BITS = 8;
+    private static final int INPUT_MASK = (1 << INPUT_BITS) - 1;
+    private static final int MAX_RUN = Integer.MAX_VALUE >>> INPUT_BITS;
+
+    private final long seed;
+    private final boolean endless;
+    private final int startBalls;
+    private int[] runs = new int[64];
+    private int runCount;
+    private long ticks;
+
+    // Outcome of the recorded game, checked by replays
+    private int finalScore, finalLevel;
+
+    public InputLog(long seed, boolean endless, int startBalls) {
+        this.seed = seed;
+        this.endless = endless;
+        this.startBalls = startBalls;
+    }
+
+    // Starts a log matching the settings of the given (fresh) game
+    public static InputLog forGame(GameCore game) {
+        return new InputLog(game.seed(), game.isEndless(), game.startBalls());
+    }
+
+    // A new game set up exactly like the recorded one
+    public GameCore newGame() {
+        return new GameCore(seed, endless, startBalls);
+    }
+
+    public void record(int input) {
+        if (runCount > 0) {
+            int last = runs[runCount - 1];
+            if ((last & INPUT_MASK) == input && (last >>> INPUT_BITS) < MAX_RUN) {
+                runs[runCount - 1] = last + (1 << INPUT_BITS);
+                ticks++;
+                return;
+            }
+        }
+        if (runCount == runs.length) runs = Arrays.copyOf(runs, runCount * 2);
+        runs[runCount++] = (1 << INPUT_BITS) | (input & INPUT_MASK);
+        ticks++;
+    }
+
+    public void recordOutcome(GameCore game) {
+        finalScore = game.score();
+        finalLevel = game.level();
+    }
+
+    // Feeds every recorded input to the game, as fast as it will go
+    public void replay(GameCore game) {
+        for (int i = 0; i < runCount; i++) {
+            int input = runs[i] & INPUT_MASK;
+            for (int n = runs[i] >>> INPUT_BITS; n > 0; n--) {
+                game.step(input);
+            }
+        }
+    }
+
+    public void save(Path path) throws IOException {
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(path)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(FORMAT_VERSION);
+            out.writeLong(seed);
+            out.writeBoolean(endless);
+            out.writeInt(startBalls);
+            out.writeInt(finalScore);
+            out.writeInt(finalLevel);
+            out.writeLong(ticks);
+            out.writeInt(runCount);
+            for (int i = 0; i < runCount; i++) {
+                out.writeInt(runs[i]);
+            }
+        }
+    }
+
+    public static InputLog load(Path path) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path)))) {
+            if (in.readInt() != MAGIC) throw new IOException("Not a Brick Breaker input log: " + path);
+            int version = in.readInt();
+            if (version != FORMAT_VERSION) throw new IOException("Unsupported input log version " + version + ": " + path);
+            InputLog log = new InputLog(in.readLong(), in.readBoolean(), in.readInt());
+            log.finalScore = in.readInt();
+            log.finalLevel = in.readInt();
+            log.ticks = in.readLong();
+            log.runCount = in.readInt();
+            log.runs = new int[Math.max(1, log.runCount)];
+            for (int i = 0; i < log.runCount; i++) {
+                log.runs[i] = in.readInt();
+            }
+            return log;
+        }
+    }
+
+    public long seed() {
+        return seed;
+    }
+
+    public long ticks() {
+        return ticks;
+    }
+
+    public int runCount() {
+        return runCount;
+    }
+
+    public int finalScore() {
+        return finalScore;
+    }
+
+    public int finalLevel() {
+        return finalLevel;
+    }
+}
@@ -0,0 +1,21 @@
+package application;
+
+// Paddle controller fed by the arrow keys of the JavaFX window
+public class KeyboardController implements PaddleController {
+
+    private boolean leftPressed = false, rightPressed = false;
+
+    public void setLeftPressed(boolean pressed) {
+        leftPressed = pressed;
+    }
+
+    public void setRightPressed(boolean pressed) {
+        rightPressed = pressed;
+    }
+
+    @Override
+    public int input(GameCore game) {
+        return (leftPressed ? GameCore.INPUT_LEFT : GameCore.INPUT_NONE)
+                | (rightPressed ? GameCore.INPUT_RIGHT : GameCore.INPUT_NONE);
+    }
+}
@@ -0,0 +1,11 @@
+package application;
+
+// Decides which paddle keys are held on each tick. The keyboard is one
+// implementation; autopilots (heuristic or learned) are others, which lets
+// them play headless games through GameCore without a window.
+@FunctionalInterface
+public interface PaddleController {
+
+    // Returns the GameCore.INPUT_* bits to hold for the next tick
+    int input(GameCore game);
+}
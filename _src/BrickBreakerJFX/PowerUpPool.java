@@ -0,0 +1,67 @@
+package application;
+
+// Fixed-capacity store for falling power-ups, kept as parallel primitive
+// arrays. Spawning never allocates and removal swaps the last power-up into
+// the freed slot, so the live ones always sit densely in [0, size).
+public class PowerUpPool {
+
+    private final double[] x;
+    private final double[] y;
+    private final PowerUpType[] type;
+    private int size;
+
+    public PowerUpPool(int capacity) {
+        x = new double[capacity];
+        y = new double[capacity];
+        type = new PowerUpType[capacity];
+    }
+
+    // Returns false (dropping the power-up) when the pool is full
+    public boolean spawn(double x, double y, PowerUpType type) {
+        if (size == this.x.length) return false;
+        this.x[size] = x;
+        this.y[size] = y;
+        this.type[size] = type;
+        size++;
+        return true;
+    }
+
+    // Swap-removes slot i. Iterate from size() - 1 down to 0 when removing
+    // during a pass, so the moved element has already been visited.
+    public void remove(int i) {
+        int last = --size;
+        x[i] = x[last];
+        y[i] = y[last];
+        type[i] = type[last];
+        type[last] = null;
+    }
+
+    public void fall(double dy) {
+        for (int i = 0; i < size; i++) {
+            y[i] += dy;
+        }
+    }
+
+    public void clear() {
+        for (int i = 0; i < size; i++) {
+            type[i] = null;
+        }
+        size = 0;
+    }
+
+    public double x(int i) {
+        return x[i];
+    }
+
+    public double y(int i) {
+        return y[i];
+    }
+
+    public PowerUpType type(int i) {
+        return type[i];
+    }
+
+    public int size() {
+        return size;
+    }
+}
@@ -0,0 +1,20 @@
+package application;
+
+// Kinds of power-up a broken brick can drop. Timed effects last for the
+// given number of game ticks (60 ticks ~ 1 second); instant ones have 0.
+public enum PowerUpType {
+    WIDE_PADDLE(600),
+    SLOW_BALL(480),
+    SPLIT_BALL(0),
+    BONUS_POINTS(0);
+
+    // Cached so per-tick code can index types without values() copying the array
+    static final PowerUpType[] VALUES = values();
+    static final int COUNT = VALUES.length;
+
+    final int durationTicks;
+
+    PowerUpType(int durationTicks) {
+        this.durationTicks = durationTicks;
+    }
+}
@@ -0,0 +1,51 @@
+package application;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+// Headless replay of a recorded game: re-simulates it from its seed and
+// inputs with no rendering, checks that it ends the same way, and reports
+// how fast the update path ran.
+//
+// Usage: java application.Replay <log file> [repeat count]
+public class Replay {
+
+    private static final double TICKS_PER_SECOND = 60; // Real-time speed of the game loop
+
+    private static final String USAGE = "Usage: java application.Replay <log file> [repeat count >= 1]";
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1) usage();
+        int repeat = 1;
+        if (args.length > 1) {
+            try {
+                repeat = Integer.parseInt(args[1]);
+            } catch (NumberFormatException e) {
+                usage();
+            }
+            if (repeat < 1) usage();
+        }
+        InputLog log = InputLog.load(Path.of(args[0]));
+
+        GameCore game = null;
+        long start = System.nanoTime();
+        for (int i = 0; i < repeat; i++) {
+            game = log.newGame();
+            log.replay(game);
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+
+        boolean matches = game.score() == log.finalScore() && game.level() == log.finalLevel();
+        double ticksPerSecond = log.ticks() * (double) repeat / seconds;
+        System.out.printf("Seed %d, %d ticks in %d input runs%n", log.seed(), log.ticks(), log.runCount());
+        System.out.printf("Replayed: score %d, level %d (recorded: score %d, level %d) -> %s%n",
+                game.score(), game.level(), log.finalScore(), log.finalLevel(), matches ? "MATCH" : "MISMATCH");
+        System.out.printf("%.0f ticks/sec, %.0fx real time%n", ticksPerSecond, ticksPerSecond / TICKS_PER_SECOND);
+        if (!matches) System.exit(1);
+    }
+
+    private static void usage() {
+        System.err.println(USAGE);
+        System.exit(2);
+    }
+}
@@ -0,0 +1,40 @@
+package application;
+
+// Heuristic autopilot: keeps the paddle centred under the most urgent ball,
+// the lowest one that is still falling (or just the lowest if none are).
+public class TrackingController implements PaddleController {
+
+    private final double deadZone;
+
+    public TrackingController() {
+        this(10);
+    }
+
+    // Within deadZone pixels of the target the paddle stays put, which
+    // keeps it from jittering left and right every tick
+    public TrackingController(double deadZone) {
+        this.deadZone = deadZone;
+    }
+
+    @Override
+    public int input(GameCore game) {
+        BallStore balls = game.balls();
+        int target = -1;
+        boolean targetFalling = false;
+        for (int i = 0; i < balls.size(); i++) {
+            boolean falling = balls.speedY[i] > 0;
+            if (target == -1 || (falling && !targetFalling)
+                    || (falling == targetFalling && balls.y[i] > balls.y[target])) {
+                target = i;
+                targetFalling = falling;
+            }
+        }
+        if (target == -1) return GameCore.INPUT_NONE;
+
+        double ballCenter = balls.x[target] + GameCore.BALL_RADIUS / 2.0;
+        double paddleCenter = game.paddleX() + game.paddleWidth() / 2.0;
+        if (ballCenter < paddleCenter - deadZone) return GameCore.INPUT_LEFT;
+        if (ballCenter > paddleCenter + deadZone) return GameCore.INPUT_RIGHT;
+        return GameCore.INPUT_NONE;
+    }
+}
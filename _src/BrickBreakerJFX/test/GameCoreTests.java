@@ -0,0 +1,248 @@
+package application;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+
+// Checks for the headless game logic. There is no test framework in this
+// project, so this is a plain program: it prints each check and exits with
+// status 1 if any of them fails. It needs no JavaFX:
+//
+//   javac -d out BallStore.java BrickField.java GameCore.java InputLog.java PaddleController.java \
+//       PowerUpPool.java PowerUpType.java TrackingController.java test/*.java
+//   java -cp out application.GameCoreTests
+public class GameCoreTests {
+
+    private static final long MAX_TICKS = 5_000;
+
+    private static int failures;
+
+    public static void main(String[] args) {
+        run("brickFieldFill", GameCoreTests::brickFieldFill);
+        run("brickFieldDestroy", GameCoreTests::brickFieldDestroy);
+        run("brickFieldGenerate", GameCoreTests::brickFieldGenerate);
+        run("brickFieldLimits", GameCoreTests::brickFieldLimits);
+        run("replayMatchesRecording", GameCoreTests::replayMatchesRecording);
+        run("replayAfterSaveAndLoad", GameCoreTests::replayAfterSaveAndLoad);
+        run("parallelMatchesSerial", GameCoreTests::parallelMatchesSerial);
+        if (failures > 0) {
+            System.out.println(failures + " failed");
+            System.exit(1);
+        }
+        System.out.println("All passed");
+    }
+
+    private interface Check {
+        void run() throws Exception;
+    }
+
+    private static void run(String name, Check test) {
+        try {
+            test.run();
+            System.out.println("ok   " + name);
+        } catch (Exception | Error e) {
+            failures++;
+            System.out.println("FAIL " + name + ": " + e);
+        }
+    }
+
+    private static void brickFieldFill() {
+        BrickField field = new BrickField(10);
+        check(field.isCleared(), "new field is cleared");
+        check(field.highestLiveRow(), -1);
+        field.fill(5);
+        check(field.rows(), 5);
+        check(field.liveCount(), 50);
+        check(field.highestLiveRow(), 4);
+        check(field.rowMask(0), 0x3FFL);
+        check(field.rowMask(5), 0L);
+
+        // Refilling with fewer rows drops the ones past the end
+        field.fill(3);
+        check(field.liveCount(), 30);
+        check(field.highestLiveRow(), 2);
+        check(!field.isAlive(4, 0), "row beyond the new layout is gone");
+    }
+
+    private static void brickFieldDestroy() {
+        BrickField field = new BrickField(4);
+        field.fill(3);
+        int version = field.version();
+        check(field.destroy(2, 1), "destroys a live brick");
+        check(!field.destroy(2, 1), "second destroy finds nothing");
+        check(!field.destroy(3, 0), "row out of range");
+        check(!field.destroy(0, 4), "column out of range");
+        check(field.liveCount(), 11);
+        check(field.version(), version + 1);
+
+        // Emptying the front row moves highestLiveRow past any gaps
+        field.destroy(1, 0);
+        field.destroy(1, 1);
+        field.destroy(1, 2);
+        field.destroy(1, 3);
+        check(field.highestLiveRow(), 2);
+        field.destroy(2, 0);
+        field.destroy(2, 2);
+        field.destroy(2, 3);
+        check(field.highestLiveRow(), 0);
+        check(field.isRowEmpty(1), "row 1 is empty");
+        for (int col = 0; col < 4; col++) field.destroy(0, col);
+        check(field.isCleared(), "every brick destroyed");
+        check(field.liveCount(), 0);
+        check(field.highestLiveRow(), -1);
+    }
+
+    private static void brickFieldGenerate() {
+        Random random = new Random(1);
+        for (int i = 0; i < 2000; i++) {
+            int cols = 1 + random.nextInt(BrickField.MAX_COLS);
+            int rows = random.nextInt(12);
+            long seed = random.nextLong();
+            double density = random.nextDouble();
+            BrickField field = new BrickField(cols);
+            field.generate(rows, seed, density);
+
+            int live = 0, highest = -1;
+            for (int row = 0; row < rows; row++) {
+                long mask = field.rowMask(row);
+                check(cols == 64 || (mask >>> cols) == 0, "no bricks past the last column");
+                live += Long.bitCount(mask);
+                if (mask != 0) highest = row;
+            }
+            check(field.liveCount(), live);
+            check(field.highestLiveRow(), highest);
+            check(rows == 0 || live > 0, "never an empty level");
+
+            // The same seed gives the same layout
+            BrickField again = new BrickField(cols);
+            again.generate(rows, seed, density);
+            for (int row = 0; row < rows; row++) check(again.rowMask(row), field.rowMask(row));
+        }
+
+        BrickField empty = new BrickField(7);
+        empty.generate(4, 42, 0);
+        check(empty.liveCount(), 7);
+        check(empty.highestLiveRow(), 0);
+    }
+
+    private static void brickFieldLimits() {
+        BrickField wide = new BrickField(BrickField.MAX_COLS);
+        wide.fill(2);
+        check(wide.rowMask(1), -1L);
+        check(wide.liveCount(), 2 * BrickField.MAX_COLS);
+        check(wide.destroy(1, 63), "destroys the top bit");
+        check(wide.liveCount(), 2 * BrickField.MAX_COLS - 1);
+        checkThrows(() -> new BrickField(0));
+        checkThrows(() -> new BrickField(BrickField.MAX_COLS + 1));
+        checkThrows(() -> wide.fill(-1));
+    }
+
+    // Replaying the recorded inputs on a fresh game ends in the same state,
+    // in both modes and with one or many balls
+    private static void replayMatchesRecording() {
+        for (long seed = 0; seed < 4; seed++) {
+            for (boolean endless : new boolean[] {false, true}) {
+                for (int startBalls : new int[] {1, 3, 40}) {
+                    GameCore game = new GameCore(seed, endless, startBalls);
+                    InputLog log = record(game);
+                    GameCore replayed = log.newGame();
+                    log.replay(replayed);
+                    checkSame(replayed, game);
+                }
+            }
+        }
+    }
+
+    private static void replayAfterSaveAndLoad() throws Exception {
+        GameCore game = new GameCore(7, true, 2);
+        InputLog log = record(game);
+        Path file = Files.createTempFile("brickbreaker", ".bbl");
+        try {
+            log.save(file);
+            InputLog loaded = InputLog.load(file);
+            check(loaded.seed(), 7L);
+            check(loaded.ticks(), log.ticks());
+            check(loaded.runCount(), log.runCount());
+            check(loaded.finalScore(), game.score());
+            check(loaded.finalLevel(), game.level());
+            GameCore replayed = loaded.newGame();
+            loaded.replay(replayed);
+            checkSame(replayed, game);
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    // Big ball counts fan out over the fork-join pool; the outcome must not
+    // depend on it
+    private static void parallelMatchesSerial() {
+        for (int startBalls : new int[] {1500, 5000}) {
+            GameCore serial = new GameCore(11, false, startBalls);
+            serial.setParallel(false);
+            GameCore parallel = new GameCore(11, false, startBalls);
+            parallel.setParallel(true);
+            Random inputs = new Random(startBalls);
+            for (int tick = 0; tick < 3000; tick++) {
+                int input = inputs.nextInt(3);
+                serial.step(input);
+                parallel.step(input);
+            }
+            checkSame(parallel, serial);
+        }
+    }
+
+    // Plays until the game ends (or MAX_TICKS), logging every input
+    private static InputLog record(GameCore game) {
+        InputLog log = InputLog.forGame(game);
+        PaddleController controller = new TrackingController();
+        while (!game.isGameOver() && game.tick() < MAX_TICKS) {
+            int input = controller.input(game);
+            log.record(input);
+            game.step(input);
+        }
+        log.recordOutcome(game);
+        return log;
+    }
+
+    private static void checkSame(GameCore actual, GameCore expected) {
+        check(actual.tick(), expected.tick());
+        check(actual.score(), expected.score());
+        check(actual.level(), expected.level());
+        check(actual.isGameOver() == expected.isGameOver(), "same game-over state");
+        check(actual.paddleX(), expected.paddleX());
+        check(actual.fieldOffsetY(), expected.fieldOffsetY());
+        check(actual.bricks().liveCount(), expected.bricks().liveCount());
+        BallStore a = actual.balls(), b = expected.balls();
+        check(a.size(), b.size());
+        for (int i = 0; i < a.size(); i++) {
+            check(a.x[i], b.x[i]);
+            check(a.y[i], b.y[i]);
+            check(a.speedX[i], b.speedX[i]);
+            check(a.speedY[i], b.speedY[i]);
+        }
+    }
+
+    private static void check(long actual, long expected) {
+        if (actual != expected) throw new AssertionError("expected " + expected + " but got " + actual);
+    }
+
+    // Compares bits, so -0.0 and NaN count too
+    private static void check(double actual, double expected) {
+        if (Double.doubleToLongBits(actual) != Double.doubleToLongBits(expected)) {
+            throw new AssertionError("expected " + expected + " but got " + actual);
+        }
+    }
+
+    private static void check(boolean condition, String what) {
+        if (!condition) throw new AssertionError(what);
+    }
+
+    private static void checkThrows(Runnable action) {
+        try {
+            action.run();
+        } catch (IllegalArgumentException expected) {
+            return;
+        }
+        throw new AssertionError("expected IllegalArgumentException");
+    }
+}
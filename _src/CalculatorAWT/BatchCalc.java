@@ -0,0 +1,162 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+// Headless batch mode: evaluates a file with one expression per line (an
+// operand/operator record such as "12.5 * 3" is just a short expression)
+// and writes one result per line, in the same order. Lines that do not
+// parse produce "Error", the same as on the calculator's display.
+//
+// The input is memory-mapped and cut at line boundaries into chunks that
+// worker threads evaluate in parallel. Each worker reads bytes straight
+// from its mapped chunk and writes its results into a byte array; the
+// main thread writes finished chunks out in order while later chunks are
+// still being evaluated.
+//
+// Chunks are sized so every thread gets several, and small enough that
+// their results stay under MAX_CHUNK_OUTPUT: a result line is at most
+// MAX_EXPANSION times as long as its input line, so a chunk's output is
+// bounded by its input size. With a few chunks per thread in flight,
+// memory use does not grow with the file.
+//
+// Usage: java BatchCalc <input file> <output file> [threads]
+public class BatchCalc {
+	private static final int CHUNKS_PER_THREAD = 8; // Enough to even out uneven chunks
+	private static final int CHUNKS_IN_FLIGHT_PER_THREAD = 2;
+	private static final int MAX_CHUNK_OUTPUT = 8 << 20;
+	// The longest result plus its '\n', per shortest non-empty line ("1\n")
+	private static final int MAX_EXPANSION = (DoubleFormat.MAX_LENGTH + 2) / 2;
+	private static final int MIN_CHUNK_SIZE = 64 << 10;
+	private static final int MAX_CHUNK_SIZE = MAX_CHUNK_OUTPUT / MAX_EXPANSION;
+	private static final byte[] ERROR = "Error".getBytes();
+	
+	public static void main(String[] args) throws IOException, InterruptedException {
+		if(args.length<2) {
+			System.err.println("Usage: java BatchCalc <input file> <output file> [threads]");
+			System.exit(2);
+		}
+		int threads = args.length>2 ? Integer.parseInt(args[2]) : Runtime.getRuntime().availableProcessors();
+		
+		long start = System.nanoTime();
+		long[] totals = run(Path.of(args[0]), Path.of(args[1]), threads);
+		double seconds = (System.nanoTime()-start)/1e9;
+		
+		System.err.printf("%d records (%d errors), %.1f MB in %.2f s: %.0f records/sec on %d threads%n",
+				totals[0], totals[1], totals[2]/1e6, seconds, totals[0]/seconds, threads);
+	}
+	
+	// Returns {records, errors, input bytes}
+	public static long[] run(Path input, Path output, int threads) throws IOException, InterruptedException {
+		ExecutorService pool = Executors.newFixedThreadPool(threads);
+		try (FileChannel in = FileChannel.open(input, StandardOpenOption.READ);
+				FileChannel out = FileChannel.open(output, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+			long size = in.size();
+			long chunkSize = chunkSize(size, threads);
+			long records = 0, errors = 0;
+			ArrayDeque<Future<Chunk>> pending = new ArrayDeque<>();
+			long position = 0;
+			while(position<size || !pending.isEmpty()) {
+				// Keep a bounded number of chunks queued so memory stays flat however big the input
+				while(position<size && pending.size()<threads*CHUNKS_IN_FLIGHT_PER_THREAD) {
+					long end = lineBoundary(in, Math.min(size, position+chunkSize), size);
+					MappedByteBuffer mapped = in.map(FileChannel.MapMode.READ_ONLY, position, end-position);
+					pending.add(pool.submit(() -> evaluate(mapped)));
+					position = end;
+				}
+				Chunk done = pending.remove().get();
+				out.write(ByteBuffer.wrap(done.bytes, 0, done.length));
+				records += done.records;
+				errors += done.errors;
+			}
+			return new long[] {records, errors, size};
+		}
+		catch(ExecutionException e) {
+			throw new IllegalStateException("Batch evaluation failed", e.getCause());
+		}
+		finally {
+			pool.shutdownNow();
+		}
+	}
+	
+	// Input bytes per chunk, before rounding up to a line boundary
+	static long chunkSize(long size, int threads) {
+		long perChunk = size/((long) threads*CHUNKS_PER_THREAD);
+		return Math.max(MIN_CHUNK_SIZE, Math.min(MAX_CHUNK_SIZE, perChunk));
+	}
+	
+	// First position after the next '\n' at or after from (or the end of file)
+	private static long lineBoundary(FileChannel in, long from, long size) throws IOException {
+		ByteBuffer probe = ByteBuffer.allocate(4096);
+		long position = from;
+		while(position<size) {
+			probe.clear();
+			int read = in.read(probe, position);
+			if(read<=0) break;
+			for(int i=0;i<read;i++) {
+				if(probe.get(i)=='\n') return position+i+1;
+			}
+			position += read;
+		}
+		return size;
+	}
+	
+	// Results of one chunk, ready to be written
+	private static class Chunk {
+		byte[] bytes = new byte[1 << 16];
+		int length;
+		final char[] number = new char[DoubleFormat.MAX_LENGTH];
+		long records, errors;
+		
+		void append(byte b) {
+			if(length==bytes.length) bytes = Arrays.copyOf(bytes, length*2);
+			bytes[length++] = b;
+		}
+		
+		void append(byte[] text) {
+			for(byte b : text) append(b);
+		}
+		
+		// In Double.toString's format, without going through a String on JDK 19 and later
+		void append(double value) {
+			int end = DoubleFormat.format(value, number, 0);
+			for(int i=0;i<end;i++) append((byte) number[i]);
+		}
+	}
+	
+	private static Chunk evaluate(ByteBuffer mapped) {
+		ExpressionParser parser = new ExpressionParser();
+		ByteChars line = new ByteChars();
+		Chunk chunk = new Chunk();
+		int limit = mapped.limit();
+		int lineStart = 0;
+		while(lineStart<limit) {
+			int lineEnd = lineStart;
+			while(lineEnd<limit && mapped.get(lineEnd)!='\n') lineEnd++;
+			int next = lineEnd+1;
+			if(lineEnd>lineStart && mapped.get(lineEnd-1)=='\r') lineEnd--;
+			
+			if(lineEnd>lineStart) {
+				chunk.records++;
+				try {
+					chunk.append(parser.evaluate(line.reset(mapped, lineStart, lineEnd)));
+				}
+				catch(IllegalArgumentException ex) {
+					chunk.errors++;
+					chunk.append(ERROR);
+				}
+			}
+			chunk.append((byte) '\n');
+			lineStart = next;
+		}
+		return chunk;
+	}
+}
@@ -0,0 +1,39 @@
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+// A reusable CharSequence view of a range of ASCII bytes in a ByteBuffer,
+// so the parser can read expressions straight out of a memory-mapped file
+// without copying each line into a String first.
+class ByteChars implements CharSequence {
+	private ByteBuffer buffer;
+	private int start, length;
+	
+	ByteChars reset(ByteBuffer buffer, int start, int end) {
+		this.buffer = buffer;
+		this.start = start;
+		this.length = end - start;
+		return this;
+	}
+	
+	@Override
+	public int length() {
+		return length;
+	}
+	
+	@Override
+	public char charAt(int index) {
+		return (char) (buffer.get(start + index) & 0xFF);
+	}
+	
+	@Override
+	public CharSequence subSequence(int from, int to) {
+		byte[] bytes = new byte[to - from];
+		buffer.get(start + from, bytes);
+		return new String(bytes, StandardCharsets.ISO_8859_1);
+	}
+	
+	@Override
+	public String toString() {
+		return subSequence(0, length).toString();
+	}
+}
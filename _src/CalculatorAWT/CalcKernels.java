@@ -0,0 +1,159 @@
+import java.util.function.DoubleUnaryOperator;
+import java.util.stream.IntStream;
+
+// Bulk versions of the calculator's operations, applied element-wise over
+// whole double[] columns, e.g. converting a million prices at once. The
+// operation codes are MyCalc's (Expression.ADD..MOD), so a button maps
+// straight onto a kernel.
+//
+// The inner loops use the Vector API when the jdk.incubator.vector module
+// is present (see VectorKernels) and plain scalar loops otherwise. With
+// PARALLEL, arrays of at least PARALLEL_THRESHOLD elements are split into
+// chunks that run on the common fork-join pool.
+public class CalcKernels {
+	public static final CalcKernels SEQUENTIAL = new CalcKernels(false);
+	public static final CalcKernels PARALLEL = new CalcKernels(true);
+	
+	static final int PARALLEL_THRESHOLD = 1 << 16;
+	private static final int CHUNK = 1 << 14;
+	private static final int BLOCK = 1024; // Rows per step when evaluating expressions column-wise
+	
+	// The inner loops: out[i] = a[i] op b[i] (or a[i] op b) for i in [from, to)
+	interface Backend {
+		void apply(int operation, double[] a, double[] b, double[] out, int from, int to);
+		void apply(int operation, double[] a, double b, double[] out, int from, int to);
+	}
+	
+	static final Backend SCALAR = new ScalarKernels();
+	private static final Backend BACKEND = loadBackend();
+	
+	private final boolean parallel;
+	
+	private CalcKernels(boolean parallel) {
+		this.parallel = parallel;
+	}
+	
+	private static Backend loadBackend() {
+		try {
+			return (Backend) Class.forName("VectorKernels").getDeclaredConstructor().newInstance();
+		}
+		catch (ReflectiveOperationException | LinkageError vectorApiMissing) {
+			return SCALAR;
+		}
+	}
+	
+	// Whether the Vector API backend is in use
+	public static boolean isVectorized() {
+		return BACKEND != SCALAR;
+	}
+	
+	// out[i] = a[i] op b[i]
+	public void apply(int operation, double[] a, double[] b, double[] out) {
+		checkLengths(a.length, b.length, out.length);
+		checkOperation(operation);
+		forChunks(a.length, (from, to) -> BACKEND.apply(operation, a, b, out, from, to));
+	}
+	
+	// out[i] = a[i] op b
+	public void apply(int operation, double[] a, double b, double[] out) {
+		checkLengths(a.length, a.length, out.length);
+		checkOperation(operation);
+		forChunks(a.length, (from, to) -> BACKEND.apply(operation, a, b, out, from, to));
+	}
+	
+	// out[i] = f(in[i]), e.g. with ExpressionCompiler.compileUnary
+	public void apply(DoubleUnaryOperator f, double[] in, double[] out) {
+		checkLengths(in.length, in.length, out.length);
+		forChunks(in.length, (from, to) -> {
+			for (int i = from; i < to; i++) out[i] = f.applyAsDouble(in[i]);
+		});
+	}
+	
+	// out[row] = expression with variable v taken from columns[v][row]. The
+	// expression's code is run a block of rows at a time, each operation
+	// being one bulk kernel over the block, so formulas vectorize too.
+	public void evaluate(Expression expression, double[][] columns, double[] out) {
+		if (columns.length != expression.variableCount()) {
+			throw new IllegalArgumentException("Expected " + expression.variableCount() + " columns, got " + columns.length);
+		}
+		for (double[] column : columns) checkLengths(column.length, column.length, out.length);
+		forChunks(out.length, (from, to) -> {
+			double[][] stack = new double[expression.maxStack][BLOCK];
+			for (int start = from; start < to; start += BLOCK) {
+				evaluateBlock(expression, columns, out, start, Math.min(BLOCK, to - start), stack);
+			}
+		});
+	}
+	
+	private static void evaluateBlock(Expression expression, double[][] columns, double[] out, int start, int n, double[][] stack) {
+		int[] code = expression.code;
+		int sp = -1;
+		for (int pc = 0; pc < code.length; pc++) {
+			switch (code[pc]) {
+			case Expression.CONST -> {
+				double value = expression.constants[code[++pc]];
+				double[] slot = stack[++sp];
+				for (int i = 0; i < n; i++) slot[i] = value;
+			}
+			case Expression.VAR -> System.arraycopy(columns[code[++pc]], start, stack[++sp], 0, n);
+			case Expression.NEG -> BACKEND.apply(Expression.MUL, stack[sp], -1.0, stack[sp], 0, n);
+			default -> {
+				sp--;
+				BACKEND.apply(code[pc], stack[sp], stack[sp + 1], stack[sp], 0, n);
+			}
+			}
+		}
+		System.arraycopy(stack[0], 0, out, start, n);
+	}
+	
+	private interface Range {
+		void run(int from, int to);
+	}
+	
+	private void forChunks(int length, Range range) {
+		if (!parallel || length < PARALLEL_THRESHOLD) {
+			range.run(0, length);
+			return;
+		}
+		IntStream.range(0, (length + CHUNK - 1) / CHUNK).parallel()
+				.forEach(chunk -> range.run(chunk * CHUNK, Math.min(length, (chunk + 1) * CHUNK)));
+	}
+	
+	private static void checkLengths(int a, int b, int out) {
+		if (a != b || a != out) throw new IllegalArgumentException("Array lengths differ: " + a + ", " + b + ", " + out);
+	}
+	
+	private static void checkOperation(int operation) {
+		if (operation < Expression.ADD || operation > Expression.MOD) {
+			throw new IllegalArgumentException("Unknown operation code: " + operation);
+		}
+	}
+	
+	// One loop per operation, so the JIT's own auto-vectorizer can handle
+	// the simple ones even without the Vector API
+	private static class ScalarKernels implements Backend {
+		@Override
+		public void apply(int operation, double[] a, double[] b, double[] out, int from, int to) {
+			switch (operation) {
+			case Expression.ADD -> { for (int i = from; i < to; i++) out[i] = a[i]+b[i]; }
+			case Expression.SUB -> { for (int i = from; i < to; i++) out[i] = a[i]-b[i]; }
+			case Expression.MUL -> { for (int i = from; i < to; i++) out[i] = a[i]*b[i]; }
+			case Expression.DIV -> { for (int i = from; i < to; i++) out[i] = a[i]/b[i]; }
+			case Expression.MOD -> { for (int i = from; i < to; i++) out[i] = a[i]%b[i]; }
+			default -> throw new IllegalArgumentException("Unknown operation code: " + operation);
+			}
+		}
+		
+		@Override
+		public void apply(int operation, double[] a, double b, double[] out, int from, int to) {
+			switch (operation) {
+			case Expression.ADD -> { for (int i = from; i < to; i++) out[i] = a[i]+b; }
+			case Expression.SUB -> { for (int i = from; i < to; i++) out[i] = a[i]-b; }
+			case Expression.MUL -> { for (int i = from; i < to; i++) out[i] = a[i]*b; }
+			case Expression.DIV -> { for (int i = from; i < to; i++) out[i] = a[i]/b; }
+			case Expression.MOD -> { for (int i = from; i < to; i++) out[i] = a[i]%b; }
+			default -> throw new IllegalArgumentException("Unknown operation code: " + operation);
+			}
+		}
+	}
+}
@@ -0,0 +1,312 @@
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// Named memory cells for the calculator, like a small spreadsheet: a cell
+// holds either a number or a formula over other cells ("total = net * (1 + tax)").
+//
+// Changing a cell only recomputes what depends on it. Every cell has a
+// rank that is higher than the ranks of the cells its formula reads, and
+// dirty cells are evaluated lowest rank first from a heap, so each one is
+// evaluated at most once per change, after all of its inputs. A cell whose
+// value comes out unchanged does not dirty its own dependents.
+//
+// Cells are numbered in creation order and their state is kept in parallel
+// arrays indexed by that number.
+public class CellSheet {
+	private static final int[] NONE = {};
+	private static final double[] NO_VALUES = {};
+	
+	private final Map<String, Integer> cellsByName = new HashMap<>();
+	private final ExpressionParser parser = new ExpressionParser();
+	private int count;
+	private String[] names = new String[16];
+	private Expression[] formulas = new Expression[16]; // null for plain values
+	private int[][] inputs = new int[16][]; // The cells a formula reads, in its variable order
+	private double[][] arguments = new double[16][]; // Reused to pass those cells' values
+	private int[][] dependents = new int[16][];
+	private int[] dependentCount = new int[16];
+	private int[] rank = new int[16];
+	private double[] values = new double[16];
+	private boolean[] queued = new boolean[16];
+	
+	// Dirty cells waiting to be evaluated, as a min-heap on rank
+	private int[] heap = new int[16];
+	private int heapSize;
+	// Scratch for graph walks
+	private int[] work = new int[16];
+	private int[] visited = new int[16];
+	private int[] target = new int[16]; // Cells a walk is looking for, marked with its visitMark
+	private int visitMark;
+	private int recomputed;
+	
+	// Makes name a plain value cell, dropping any formula it had
+	public void set(String name, double value) {
+		int cell = cellFor(name);
+		detach(cell);
+		recomputed = 0;
+		if (Double.doubleToLongBits(values[cell]) != Double.doubleToLongBits(value)) {
+			values[cell] = value;
+			enqueueDependents(cell);
+			recompute();
+		}
+	}
+	
+	// Gives name a formula over other cells. Cells the formula mentions that
+	// do not exist yet are created holding 0. A formula that would make a
+	// cell depend on itself is rejected and leaves the sheet unchanged.
+	public void define(String name, String formula) {
+		checkName(name);
+		List<String> referenced = ExpressionParser.names(formula);
+		String[] variables = referenced.toArray(new String[0]);
+		Expression expression = parser.parse(formula, variables);
+		Integer existing = cellsByName.get(name);
+		if (referenced.contains(name) || (existing != null && reachesAny(existing, referenced))) {
+			throw new IllegalArgumentException("Circular reference: " + name + " = " + formula);
+		}
+	
+		int cell = cellFor(name);
+		detach(cell);
+		int[] cellInputs = new int[variables.length];
+		int inputRank = -1;
+		for (int i = 0; i < variables.length; i++) {
+			int input = cellFor(variables[i]);
+			cellInputs[i] = input;
+			addDependent(input, cell);
+			inputRank = Math.max(inputRank, rank[input]);
+		}
+		formulas[cell] = expression;
+		inputs[cell] = cellInputs;
+		arguments[cell] = variables.length == 0 ? NO_VALUES : new double[variables.length];
+		raiseRank(cell, inputRank + 1);
+	
+		recomputed = 0;
+		enqueue(cell);
+		recompute();
+	}
+	
+	public double get(String name) {
+		return values[cellNamed(name)];
+	}
+	
+	// The formula of a cell, or null if it holds a plain value
+	public String formula(String name) {
+		Expression formula = formulas[cellNamed(name)];
+		return formula == null ? null : formula.source();
+	}
+	
+	public boolean contains(String name) {
+		return cellsByName.containsKey(name);
+	}
+	
+	public int size() {
+		return count;
+	}
+	
+	// How many formulas the last set or define evaluated
+	public int lastRecomputed() {
+		return recomputed;
+	}
+	
+	private int cellNamed(String name) {
+		Integer cell = cellsByName.get(name);
+		if (cell == null) throw new IllegalArgumentException("No cell named '" + name + "'");
+		return cell;
+	}
+	
+	private int cellFor(String name) {
+		Integer existing = cellsByName.get(name);
+		if (existing != null) return existing;
+		checkName(name);
+		if (count == names.length) grow();
+		int cell = count++;
+		names[cell] = name;
+		inputs[cell] = NONE;
+		dependents[cell] = NONE;
+		cellsByName.put(name, cell);
+		return cell;
+	}
+	
+	// Cell names are the names formulas can use
+	private static void checkName(String name) {
+		boolean valid = !name.isEmpty() && (Character.isLetter(name.charAt(0)) || name.charAt(0) == '_')
+				&& !name.equals("Infinity") && !name.equals("NaN");
+		for (int i = 1; valid && i < name.length(); i++) {
+			valid = Character.isLetterOrDigit(name.charAt(i)) || name.charAt(i) == '_';
+		}
+		if (!valid) throw new IllegalArgumentException("Not a valid cell name: '" + name + "'");
+	}
+	
+	private void grow() {
+		int capacity = names.length * 2;
+		names = Arrays.copyOf(names, capacity);
+		formulas = Arrays.copyOf(formulas, capacity);
+		inputs = Arrays.copyOf(inputs, capacity);
+		arguments = Arrays.copyOf(arguments, capacity);
+		dependents = Arrays.copyOf(dependents, capacity);
+		dependentCount = Arrays.copyOf(dependentCount, capacity);
+		rank = Arrays.copyOf(rank, capacity);
+		values = Arrays.copyOf(values, capacity);
+		queued = Arrays.copyOf(queued, capacity);
+		heap = Arrays.copyOf(heap, capacity);
+		visited = Arrays.copyOf(visited, capacity);
+		target = Arrays.copyOf(target, capacity);
+	}
+	
+	// Drops the cell's formula and its edges to the cells the formula read.
+	// Its rank is left alone: it is still below its dependents' ranks.
+	private void detach(int cell) {
+		for (int input : inputs[cell]) {
+			int[] list = dependents[input];
+			int n = dependentCount[input];
+			for (int i = 0; i < n; i++) {
+				if (list[i] == cell) {
+					list[i] = list[--n];
+					break;
+				}
+			}
+			dependentCount[input] = n;
+		}
+		formulas[cell] = null;
+		inputs[cell] = NONE;
+		arguments[cell] = null;
+	}
+	
+	private void addDependent(int cell, int dependent) {
+		int n = dependentCount[cell];
+		if (n == dependents[cell].length) dependents[cell] = Arrays.copyOf(dependents[cell], Math.max(4, n * 2));
+		dependents[cell][n] = dependent;
+		dependentCount[cell] = n + 1;
+	}
+	
+	// Whether any of the named cells depends on cell, directly or not
+	private boolean reachesAny(int cell, List<String> targets) {
+		visitMark++;
+		for (String name : targets) {
+			Integer existing = cellsByName.get(name);
+			if (existing != null) target[existing] = visitMark;
+		}
+		int top = 0;
+		work[top++] = cell;
+		visited[cell] = visitMark;
+		while (top > 0) {
+			int current = work[--top];
+			if (target[current] == visitMark) return true;
+			for (int i = 0; i < dependentCount[current]; i++) {
+				int next = dependents[current][i];
+				if (visited[next] != visitMark) {
+					visited[next] = visitMark;
+					work = push(work, top++, next);
+				}
+			}
+		}
+		return false;
+	}
+	
+	// Ranks only ever go up: a rank just has to stay above the ranks of the
+	// cell's inputs, so there is no need to lower it when a formula changes
+	private void raiseRank(int cell, int newRank) {
+		if (rank[cell] >= newRank) return;
+		rank[cell] = newRank;
+		int top = 0;
+		work[top++] = cell;
+		while (top > 0) {
+			int current = work[--top];
+			for (int i = 0; i < dependentCount[current]; i++) {
+				int next = dependents[current][i];
+				if (rank[next] <= rank[current]) {
+					rank[next] = rank[current] + 1;
+					work = push(work, top++, next);
+				}
+			}
+		}
+	}
+	
+	private static int[] push(int[] stack, int top, int value) {
+		if (top == stack.length) stack = Arrays.copyOf(stack, top * 2);
+		stack[top] = value;
+		return stack;
+	}
+	
+	private void recompute() {
+		while (heapSize > 0) {
+			int cell = poll();
+			queued[cell] = false;
+			int[] cellInputs = inputs[cell];
+			double[] cellArguments = arguments[cell];
+			for (int i = 0; i < cellInputs.length; i++) cellArguments[i] = values[cellInputs[i]];
+			double value = formulas[cell].evaluate(cellArguments);
+			recomputed++;
+			if (Double.doubleToLongBits(value) != Double.doubleToLongBits(values[cell])) {
+				values[cell] = value;
+				enqueueDependents(cell);
+			}
+		}
+	}
+	
+	private void enqueueDependents(int cell) {
+		for (int i = 0; i < dependentCount[cell]; i++) enqueue(dependents[cell][i]);
+	}
+	
+	private void enqueue(int cell) {
+		if (queued[cell]) return;
+		queued[cell] = true;
+		int i = heapSize++;
+		while (i > 0 && rank[heap[(i - 1) / 2]] > rank[cell]) {
+			heap[i] = heap[(i - 1) / 2];
+			i = (i - 1) / 2;
+		}
+		heap[i] = cell;
+	}
+	
+	private int poll() {
+		int top = heap[0];
+		int last = heap[--heapSize];
+		int i = 0;
+		while (2 * i + 1 < heapSize) {
+			int child = 2 * i + 1;
+			if (child + 1 < heapSize && rank[heap[child + 1]] < rank[heap[child]]) child++;
+			if (rank[heap[child]] >= rank[last]) break;
+			heap[i] = heap[child];
+			i = child;
+		}
+		heap[i] = last;
+		return top;
+	}
+	
+	// A console front end, one command per line:
+	//   name = 42            sets a value
+	//   name = a * (1 + b)   defines a formula
+	//   name                 shows a cell's value
+	public static void main(String[] args) throws IOException {
+		CellSheet sheet = new CellSheet();
+		ExpressionParser parser = new ExpressionParser();
+		BufferedReader in = new BufferedReader(new InputStreamReader(System.in));
+		String line;
+		while ((line = in.readLine()) != null) {
+			line = line.strip();
+			if (line.isEmpty()) continue;
+			try {
+				int equals = line.indexOf('=');
+				if (equals < 0) {
+					System.out.println(line + " = " + sheet.get(line));
+					continue;
+				}
+				String name = line.substring(0, equals).strip();
+				String formula = line.substring(equals + 1).strip();
+				long start = System.nanoTime();
+				if (ExpressionParser.names(formula).isEmpty()) sheet.set(name, parser.evaluate(formula));
+				else sheet.define(name, formula);
+				long micros = (System.nanoTime() - start) / 1000;
+				System.out.println(name + " = " + sheet.get(name) + "  (" + sheet.lastRecomputed() + " recomputed, " + micros + " us)");
+			}
+			catch (IllegalArgumentException ex) {
+				System.out.println("Error: " + ex.getMessage());
+			}
+		}
+	}
+}
@@ -0,0 +1,14 @@
+import java.util.function.ToDoubleFunction;
+
+// An expression compiled to JVM bytecode by ExpressionCompiler. Variable
+// values are passed in the order they were named when parsing. Compiled
+// expressions with at most one variable also implement DoubleUnaryOperator,
+// taking that variable as the operand.
+public interface CompiledExpression extends ToDoubleFunction<double[]> {
+	double evaluate(double[] values);
+	
+	@Override
+	default double applyAsDouble(double[] values) {
+		return evaluate(values);
+	}
+}
@@ -0,0 +1,191 @@
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.math.MathContext;
+
+// Exact decimal evaluation of an expression, for amounts where double's
+// binary rounding (0.1+0.2 = 0.30000000000000004) is not acceptable.
+//
+// Results are exactly what BigDecimal's add, subtract, multiply, divide
+// and remainder give with the configured MathContext, but most values never
+// become BigDecimals: each stack slot holds an unscaled long plus a decimal
+// scale (value = unscaled * 10^-scale), and operations are done with
+// overflow-checked long arithmetic. Only when a result overflows a long,
+// needs rounding to the MathContext precision, or is a division that does
+// not come out even, are the operands promoted to BigDecimal for that step.
+public class DecimalExpression {
+	private static final int MAX_POW10 = 18;
+	private static final long[] POWERS_OF_TEN = new long[MAX_POW10 + 1];
+	static {
+		POWERS_OF_TEN[0] = 1;
+		for (int i = 1; i <= MAX_POW10; i++) POWERS_OF_TEN[i] = POWERS_OF_TEN[i - 1] * 10;
+	}
+	private static final BigDecimal[] NO_VALUES = {};
+	
+	private final Expression expression;
+	private final MathContext context;
+	private final boolean roundsLongs; // Whether a result that fits a long may still need rounding
+	
+	// Scaled-long form of the constants, or null entries for ones too big for it
+	private final long[] constantUnscaled;
+	private final int[] constantScale;
+	
+	// Evaluation stack: a slot holds a BigDecimal if big[i] != null, else unscaled[i] * 10^-scale[i]
+	private final long[] unscaled;
+	private final int[] scale;
+	private final BigDecimal[] big;
+	
+	public DecimalExpression(Expression expression, MathContext context) {
+		if (expression.decimalConstants == null) {
+			throw new IllegalArgumentException("Expression was not parsed for decimal evaluation: " + expression);
+		}
+		this.expression = expression;
+		this.context = context;
+		this.roundsLongs = context.getPrecision() != 0 && context.getPrecision() <= MAX_POW10;
+		
+		int count = expression.decimalConstants.length;
+		constantUnscaled = new long[count];
+		constantScale = new int[count];
+		for (int i = 0; i < count; i++) {
+			BigInteger digits = expression.decimalConstants[i].unscaledValue();
+			constantScale[i] = digits.bitLength() < Long.SIZE ? expression.decimalConstants[i].scale() : Integer.MIN_VALUE;
+			constantUnscaled[i] = digits.longValue();
+		}
+		unscaled = new long[expression.maxStack];
+		scale = new int[expression.maxStack];
+		big = new BigDecimal[expression.maxStack];
+	}
+	
+	public static DecimalExpression parse(String source, MathContext context, String... variables) {
+		return new DecimalExpression(new ExpressionParser().parseDecimal(source, variables), context);
+	}
+	
+	public BigDecimal evaluate() {
+		return evaluate(NO_VALUES);
+	}
+	
+	// Not thread-safe: the stack is reused between calls. Throws
+	// ArithmeticException on division by zero, or when a division does not
+	// terminate under an unlimited MathContext.
+	public BigDecimal evaluate(BigDecimal... values) {
+		int[] code = expression.code;
+		int sp = -1;
+		for (int pc = 0; pc < code.length; pc++) {
+			switch (code[pc]) {
+			case Expression.CONST -> {
+				int index = code[++pc];
+				sp++;
+				if (constantScale[index] != Integer.MIN_VALUE) setLong(sp, constantUnscaled[index], constantScale[index]);
+				else big[sp] = expression.decimalConstants[index];
+			}
+			case Expression.VAR -> {
+				BigDecimal value = values[code[++pc]];
+				BigInteger digits = value.unscaledValue();
+				sp++;
+				if (digits.bitLength() < Long.SIZE) setLong(sp, digits.longValue(), value.scale());
+				else big[sp] = value;
+			}
+			case Expression.NEG -> {
+				// Rounded like the binary operations: in longs only when no rounding is needed
+				long x = unscaled[sp];
+				if (big[sp] == null && x != Long.MIN_VALUE && !(roundsLongs && Math.abs(x) >= POWERS_OF_TEN[context.getPrecision()])) {
+					unscaled[sp] = -x;
+				}
+				else big[sp] = toBig(sp).negate(context);
+			}
+			default -> {
+				sp--;
+				if (big[sp] != null || big[sp + 1] != null || !applyLong(code[pc], sp)) {
+					big[sp] = applyBig(code[pc], toBig(sp), toBig(sp + 1));
+				}
+				big[sp + 1] = null;
+			}
+			}
+		}
+		BigDecimal result = toBig(0);
+		big[0] = null;
+		return result;
+	}
+	
+	private void setLong(int slot, long value, int valueScale) {
+		unscaled[slot] = value;
+		scale[slot] = valueScale;
+		big[slot] = null;
+	}
+	
+	private BigDecimal toBig(int slot) {
+		return big[slot] != null ? big[slot] : BigDecimal.valueOf(unscaled[slot], scale[slot]);
+	}
+	
+	// Tries slot a = a op b in scaled longs; false if it has to be done in BigDecimal
+	private boolean applyLong(int operation, int a) {
+		int b = a + 1;
+		long x = unscaled[a], y = unscaled[b];
+		int resultScale;
+		long result;
+		try {
+			switch (operation) {
+			case Expression.ADD, Expression.SUB -> {
+				// Bring both to the larger scale, as BigDecimal does
+				resultScale = Math.max(scale[a], scale[b]);
+				x = rescale(x, resultScale - scale[a]);
+				y = rescale(y, resultScale - scale[b]);
+				result = operation == Expression.ADD ? Math.addExact(x, y) : Math.subtractExact(x, y);
+			}
+			case Expression.MOD -> {
+				// BigDecimal's scale rules for remainders are only this simple
+				// for equal scales, and it refuses when the integer quotient
+				// has more digits than the precision
+				if (y == 0 || x == Long.MIN_VALUE || scale[a] != scale[b]) return false;
+				if (roundsLongs && Math.abs(x / y) >= POWERS_OF_TEN[context.getPrecision()]) return false;
+				resultScale = scale[a];
+				result = x % y;
+			}
+			case Expression.MUL -> {
+				resultScale = Math.addExact(scale[a], scale[b]);
+				result = Math.multiplyExact(x, y);
+			}
+			case Expression.DIV -> {
+				// Only even divisions at the preferred scale stay in longs
+				if (y == 0 || x % y != 0) return false;
+				resultScale = Math.subtractExact(scale[a], scale[b]);
+				result = x / y;
+				if (y == -1 && x == Long.MIN_VALUE) return false;
+			}
+			default -> throw new IllegalArgumentException("Not a binary operation: " + operation);
+			}
+		}
+		catch (ArithmeticException overflow) {
+			return false;
+		}
+		if (roundsLongs && (result == Long.MIN_VALUE || Math.abs(result) >= POWERS_OF_TEN[context.getPrecision()])) return false;
+		setLong(a, result, resultScale);
+		return true;
+	}
+	
+	// x * 10^digits, throwing ArithmeticException on overflow
+	private static long rescale(long x, int digits) {
+		if (digits == 0) return x;
+		if (digits > MAX_POW10) throw new ArithmeticException("Rescale overflow");
+		return Math.multiplyExact(x, POWERS_OF_TEN[digits]);
+	}
+	
+	private BigDecimal applyBig(int operation, BigDecimal a, BigDecimal b) {
+		return switch (operation) {
+		case Expression.ADD -> a.add(b, context);
+		case Expression.SUB -> a.subtract(b, context);
+		case Expression.MUL -> a.multiply(b, context);
+		case Expression.DIV -> a.divide(b, context);
+		case Expression.MOD -> a.remainder(b, context);
+		default -> throw new IllegalArgumentException("Not a binary operation: " + operation);
+		};
+	}
+	
+	public MathContext context() {
+		return context;
+	}
+	
+	@Override
+	public String toString() {
+		return expression.toString();
+	}
+}
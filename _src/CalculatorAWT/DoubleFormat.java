@@ -0,0 +1,219 @@
+import java.math.BigInteger;
+
+// Formats doubles exactly as Double.toString does on the running JDK
+// ("14.0", "0.001", "1.0E-4", "-Infinity"), written into a caller's char
+// buffer so that nothing is allocated per value.
+//
+// Since JDK 19, Double.toString prints the fewest digits that still parse
+// back to the same double, found with the Schubfach algorithm (R.
+// Giulietti, "The Schubfach way to render doubles"): the rounding interval
+// of the double is scaled by a 126-bit approximation of a power of ten, so
+// the shortest decimal in it is found with a few 64-bit multiplications.
+// That is what this class does. Older JDKs use a different algorithm that
+// is not always shortest (1.0E23 prints as "9.999999999999999E22"), so
+// there format() copies Double.toString's output instead, allocating a
+// String per value but printing the same text.
+public final class DoubleFormat {
+	// The longest output, e.g. -2.2250738585072014E-308
+	public static final int MAX_LENGTH = 24;
+
+	private static final int Q_MIN = -1074; // Exponent of the smallest subnormal
+	private static final long C_MIN = 1L << 52; // Smallest normal significand
+	private static final long C_TINY = 3; // Subnormal significands below this need an extra digit
+	private static final int P = 53;
+	private static final long MASK_63 = (1L << 63) - 1;
+	private static final int K_MIN = -324;
+	private static final int K_MAX = 292;
+	// Whether Double.toString prints the shortest digits, as shortest() does
+	private static final boolean SHORTEST_TO_STRING = Runtime.version().feature() >= 19;
+
+	// For each k in [K_MIN, K_MAX], 10^-k as a 126-bit significand g (rounded
+	// up), split into its high and low 63 bits
+	private static final long[] G = new long[2 * (K_MAX - K_MIN + 1)];
+
+	static {
+		for (int k = K_MIN; k <= K_MAX; k++) {
+			int e = -k;
+			int r = flog2pow10(e) - 125;
+			BigInteger numerator = BigInteger.TEN.pow(Math.max(e, 0)).shiftLeft(Math.max(-r, 0));
+			BigInteger denominator = BigInteger.TEN.pow(Math.max(-e, 0)).shiftLeft(Math.max(r, 0));
+			BigInteger g = numerator.divide(denominator).add(BigInteger.ONE);
+			G[2 * (k - K_MIN)] = g.shiftRight(63).longValue();
+			G[2 * (k - K_MIN) + 1] = g.longValue() & MASK_63;
+		}
+	}
+
+	private DoubleFormat() {
+	}
+
+	public static String toString(double value) {
+		char[] chars = new char[MAX_LENGTH];
+		return new String(chars, 0, format(value, chars, 0));
+	}
+
+	// Writes value into chars from offset on (at most MAX_LENGTH chars) and
+	// returns the offset just past it
+	public static int format(double value, char[] chars, int offset) {
+		return SHORTEST_TO_STRING ? formatShortest(value, chars, offset) : put(Double.toString(value), chars, offset);
+	}
+	
+	// format() with the shortest digits whatever the JDK
+	static int formatShortest(double value, char[] chars, int offset) {
+		long bits = Double.doubleToRawLongBits(value);
+		long t = bits & (C_MIN - 1);
+		int biasedExponent = (int) (bits >>> (P - 1)) & 0x7FF;
+		if (biasedExponent == 0x7FF) {
+			return put(t != 0 ? "NaN" : bits > 0 ? "Infinity" : "-Infinity", chars, offset);
+		}
+		if (bits < 0) chars[offset++] = '-';
+		if (biasedExponent != 0) {
+			int q = biasedExponent + Q_MIN - 1;
+			long c = C_MIN | t;
+			// Integers below 2^53 are exact as they are
+			if (q < 0 && q > -P) {
+				long f = c >> -q;
+				if (f << -q == c) return layout(f, 0, chars, offset);
+			}
+			return shortest(q, c, 0, chars, offset);
+		}
+		if (t != 0) {
+			return t < C_TINY ? shortest(Q_MIN, 10 * t, -1, chars, offset) : shortest(Q_MIN, t, 0, chars, offset);
+		}
+		return put("0.0", chars, offset);
+	}
+
+	// Finds the shortest decimal f * 10^e inside the rounding interval of
+	// the double c * 2^q, preferring the one closest to it
+	private static int shortest(int q, long c, int dk, char[] chars, int offset) {
+		int out = (int) c & 1;
+		long cb = c << 2;
+		long cbr = cb + 2;
+		long cbl;
+		int k;
+		if (c != C_MIN || q == Q_MIN) {
+			cbl = cb - 2;
+			k = flog10pow2(q);
+		}
+		else {
+			// Powers of two have a narrower interval below them
+			cbl = cb - 1;
+			k = flog10ThreeQuartersPow2(q);
+		}
+		int h = q + flog2pow10(-k) + 2;
+		long g1 = G[2 * (k - K_MIN)];
+		long g0 = G[2 * (k - K_MIN) + 1];
+		long vb = roundToOdd(g1, g0, cb << h);
+		long vbl = roundToOdd(g1, g0, cbl << h);
+		long vbr = roundToOdd(g1, g0, cbr << h);
+
+		long s = vb >> 2;
+		if (s >= 100) {
+			// Try one digit less first
+			long sp10 = s / 10 * 10;
+			long tp10 = sp10 + 10;
+			boolean upin = vbl + out <= sp10 << 2;
+			boolean wpin = (tp10 << 2) + out <= vbr;
+			if (upin != wpin) return layout(upin ? sp10 : tp10, k + dk, chars, offset);
+		}
+		long t = s + 1;
+		boolean uin = vbl + out <= s << 2;
+		boolean win = (t << 2) + out <= vbr;
+		if (uin != win) return layout(uin ? s : t, k + dk, chars, offset);
+		long cmp = vb - ((s + t) << 1);
+		return layout(cmp < 0 || (cmp == 0 && (s & 1) == 0) ? s : t, k + dk, chars, offset);
+	}
+
+	// The 128-bit product g * cp, shifted down and rounded to odd
+	private static long roundToOdd(long g1, long g0, long cp) {
+		long x1 = Math.multiplyHigh(g0, cp);
+		long y0 = g1 * cp;
+		long y1 = Math.multiplyHigh(g1, cp);
+		long z = (y0 >>> 1) + x1;
+		long vbp = y1 + (z >>> 63);
+		return vbp | (((z & MASK_63) + MASK_63) >>> 63);
+	}
+
+	// Writes f * 10^e the way Double.toString lays it out: plain for
+	// magnitudes in [10^-3, 10^7), computerized scientific notation otherwise
+	private static int layout(long f, int e, char[] chars, int offset) {
+		while (f % 10 == 0) {
+			f /= 10;
+			e++;
+		}
+		int length = 1;
+		for (long rest = f / 10; rest != 0; rest /= 10) length++;
+		int point = e + length; // The value is 0.digits * 10^point
+
+		if (point > 0 && point <= 7) {
+			if (length <= point) {
+				digits(f, length, chars, offset);
+				offset += length;
+				for (int i = length; i < point; i++) chars[offset++] = '0';
+				chars[offset++] = '.';
+				chars[offset++] = '0';
+				return offset;
+			}
+			digits(f / pow10(length - point), point, chars, offset);
+			chars[offset + point] = '.';
+			digits(f % pow10(length - point), length - point, chars, offset + point + 1);
+			return offset + length + 1;
+		}
+		if (point > -3 && point <= 0) {
+			chars[offset++] = '0';
+			chars[offset++] = '.';
+			for (int i = point; i < 0; i++) chars[offset++] = '0';
+			digits(f, length, chars, offset);
+			return offset + length;
+		}
+
+		digits(f, length, chars, offset + 1);
+		chars[offset] = chars[offset + 1];
+		chars[offset + 1] = '.';
+		offset += length + 1;
+		if (length == 1) chars[offset++] = '0';
+		chars[offset++] = 'E';
+		int exponent = point - 1;
+		if (exponent < 0) {
+			chars[offset++] = '-';
+			exponent = -exponent;
+		}
+		if (exponent >= 100) chars[offset++] = (char) ('0' + exponent / 100);
+		if (exponent >= 10) chars[offset++] = (char) ('0' + exponent / 10 % 10);
+		chars[offset++] = (char) ('0' + exponent % 10);
+		return offset;
+	}
+
+	// Writes the last length decimal digits of f
+	private static void digits(long f, int length, char[] chars, int offset) {
+		for (int i = offset + length - 1; i >= offset; i--) {
+			chars[i] = (char) ('0' + f % 10);
+			f /= 10;
+		}
+	}
+
+	private static long pow10(int n) {
+		long power = 1;
+		while (n-- > 0) power *= 10;
+		return power;
+	}
+
+	private static int put(String text, char[] chars, int offset) {
+		text.getChars(0, text.length(), chars, offset);
+		return offset + text.length();
+	}
+
+	// floor(q * log10(2))
+	private static int flog10pow2(int q) {
+		return (int) ((q * 661_971_961_083L) >> 41);
+	}
+
+	// floor(q * log10(2) + log10(3/4))
+	private static int flog10ThreeQuartersPow2(int q) {
+		return (int) ((q * 661_971_961_083L - 274_743_187_321L) >> 41);
+	}
+
+	// floor(e * log2(10))
+	private static int flog2pow10(int e) {
+		return (int) ((e * 913_124_641_741L) >> 38);
+	}
+}
@@ -0,0 +1,120 @@
+import java.math.BigDecimal;
+
+// A parsed calculator expression in flat postfix form: an int array of
+// operation codes plus a table of constants. Evaluating it is a single loop
+// over the codes with a preallocated value stack, so nothing is allocated
+// or re-parsed however often the same formula is evaluated, e.g. with new
+// values for its named variables each time.
+public final class Expression {
+	// Operation codes. ADD..MOD are the same codes MyCalc uses for its buttons.
+	static final int ADD = 1;
+	static final int SUB = 2;
+	static final int MUL = 3;
+	static final int DIV = 4;
+	static final int MOD = 5;
+	static final int NEG = 6;
+	static final int CONST = 7; // followed by an index into constants
+	static final int VAR = 8; // followed by an index into the variable values
+	
+	private static final double[] NO_VARIABLES = {};
+	
+	// The infix symbol of a binary operation code
+	static char operatorSymbol(int operation) {
+		return switch (operation) {
+		case ADD -> '+';
+		case SUB -> '-';
+		case MUL -> '*';
+		case DIV -> '/';
+		case MOD -> '%';
+		default -> throw new IllegalArgumentException("Unknown operation code: " + operation);
+		};
+	}
+	
+	private final String source;
+	private final String[] variables;
+	final int[] code;
+	final double[] constants;
+	final BigDecimal[] decimalConstants; // Exact constants, or null unless parsed for decimal evaluation
+	final int maxStack;
+	private final double[] stack;
+	
+	Expression(String source, String[] variables, int[] code, double[] constants, BigDecimal[] decimalConstants, int maxStack) {
+		this.source = source;
+		this.variables = variables;
+		this.code = code;
+		this.constants = constants;
+		this.decimalConstants = decimalConstants;
+		this.maxStack = maxStack;
+		this.stack = new double[maxStack];
+	}
+	
+	// Variable values are later passed to evaluate() in the order named here
+	public static Expression parse(String source, String... variables) {
+		return new ExpressionParser().parse(source, variables);
+	}
+	
+	// The evaluate methods without a stack argument use a stack owned by this
+	// expression, so they must not be called from several threads at once;
+	// give each thread its own newStack() instead.
+	public double evaluate() {
+		return evaluate(NO_VARIABLES, stack);
+	}
+	
+	public double evaluate(double[] values) {
+		return evaluate(values, stack);
+	}
+	
+	public double[] newStack() {
+		return new double[maxStack];
+	}
+	
+	public double evaluate(double[] values, double[] stack) {
+		return run(code, code.length, constants, values, stack);
+	}
+	
+	// The evaluation loop, also run by the parser straight on its own buffers
+	static double run(int[] code, int length, double[] constants, double[] values, double[] stack) {
+		int sp = -1;
+		for (int pc = 0; pc < length; pc++) {
+			switch (code[pc]) {
+			case CONST -> stack[++sp] = constants[code[++pc]];
+			case VAR -> stack[++sp] = values[code[++pc]];
+			case NEG -> stack[sp] = -stack[sp];
+			default -> {
+				double b = stack[sp--];
+				stack[sp] = apply(code[pc], stack[sp], b);
+			}
+			}
+		}
+		return stack[0];
+	}
+	
+	// The binary operations, shared with the parser's constant folding
+	static double apply(int operation, double a, double b) {
+		return switch (operation) {
+		case ADD -> a+b;
+		case SUB -> a-b;
+		case MUL -> a*b;
+		case DIV -> a/b;
+		case MOD -> a%b;
+		default -> throw new IllegalArgumentException("Not a binary operation: " + operation);
+		};
+	}
+	
+	public String source() {
+		return source;
+	}
+	
+	public String[] variables() {
+		return variables.clone();
+	}
+	
+	public int variableCount() {
+		return variables.length;
+	}
+	
+	@Override
+	public String toString() {
+		return source;
+	}
+}
@@ -0,0 +1,296 @@
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.DoubleUnaryOperator;
+
+// Compiles an Expression into a hidden JVM class whose evaluate method is
+// the expression written out as straight-line bytecode: no loop, no
+// switch and no stack array, just loads and double arithmetic that the JIT
+// can inline into the caller. The class file is assembled by hand; the
+// method bodies never branch, so no stack map frames are needed.
+//
+// Compiling costs a class definition, so compiled forms are kept in a
+// small LRU cache keyed by source and variable names. Hidden classes are
+// unloaded once evicted and no longer referenced.
+public class ExpressionCompiler {
+	private static final int CACHE_SIZE = 256;
+	private static final int CLASS_FILE_VERSION = 61; // Java 17
+	private static final int MAX_CODE_LENGTH = 65535;
+	
+	private static final Map<String, CompiledExpression> cache = new LinkedHashMap<>(16, 0.75f, true) {
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<String, CompiledExpression> eldest) {
+			return size() > CACHE_SIZE;
+		}
+	};
+	
+	// Parses and compiles, reusing an earlier compiled form when possible
+	public static CompiledExpression compile(String source, String... variables) {
+		String key = source + '\0' + String.join("\0", variables);
+		synchronized (cache) {
+			CompiledExpression compiled = cache.get(key);
+			if (compiled == null) {
+				compiled = compile(Expression.parse(source, variables));
+				cache.put(key, compiled);
+			}
+			return compiled;
+		}
+	}
+	
+	// One-variable expressions in the shape of a DoubleUnaryOperator
+	public static DoubleUnaryOperator compileUnary(String source, String variable) {
+		return (DoubleUnaryOperator) compile(source, variable);
+	}
+	
+	// The compiled form of one of MyCalc's operations: a op b, with a and b
+	// as variables 0 and 1
+	public static CompiledExpression binary(int operation) {
+		return compile("a" + Expression.operatorSymbol(operation) + "b", "a", "b");
+	}
+	
+	public static CompiledExpression compile(Expression expression) {
+		byte[] classFile;
+		try {
+			classFile = new ClassWriter(expression).write();
+		}
+		catch (IllegalArgumentException tooBig) {
+			// Beyond what one method can hold: fall back to the interpreter
+			return new Interpreted(expression);
+		}
+		try {
+			MethodHandles.Lookup hidden = MethodHandles.lookup().defineHiddenClass(classFile, true);
+			return (CompiledExpression) hidden.findConstructor(hidden.lookupClass(), MethodType.methodType(void.class)).invoke();
+		}
+		catch (Throwable e) {
+			throw new IllegalStateException("Could not define compiled class for \"" + expression + "\"", e);
+		}
+	}
+	
+	// An expression too long to compile, run by the interpreter instead. Like
+	// the compiled classes it implements both interfaces and may be shared
+	// between threads, so each thread gets its own stack.
+	private static final class Interpreted implements CompiledExpression, DoubleUnaryOperator {
+		private final Expression expression;
+		private final ThreadLocal<double[]> stack;
+		private final ThreadLocal<double[]> operand = ThreadLocal.withInitial(() -> new double[1]);
+		
+		Interpreted(Expression expression) {
+			this.expression = expression;
+			this.stack = ThreadLocal.withInitial(expression::newStack);
+		}
+		
+		@Override
+		public double evaluate(double[] values) {
+			return expression.evaluate(values, stack.get());
+		}
+		
+		@Override
+		public double applyAsDouble(double value) {
+			double[] values = operand.get();
+			values[0] = value;
+			return evaluate(values);
+		}
+	}
+	
+	// Writes the class file for one expression
+	private static class ClassWriter {
+		// Opcodes
+		private static final int ICONST_0 = 0x03, BIPUSH = 0x10, SIPUSH = 0x11, LDC2_W = 0x14;
+		private static final int DCONST_0 = 0x0e, DCONST_1 = 0x0f, DLOAD_1 = 0x27;
+		private static final int ALOAD_0 = 0x2a, ALOAD_1 = 0x2b, DALOAD = 0x31;
+		private static final int DADD = 0x63, DSUB = 0x67, DMUL = 0x6b, DDIV = 0x6f, DREM = 0x73, DNEG = 0x77;
+		private static final int DRETURN = 0xaf, RETURN = 0xb1, INVOKESPECIAL = 0xb7;
+		// Constant pool tags
+		private static final int UTF8 = 1, DOUBLE = 6, CLASS = 7, METHODREF = 10, NAME_AND_TYPE = 12;
+		// Access flags
+		private static final int ACC_PUBLIC = 0x0001, ACC_FINAL = 0x0010, ACC_SUPER = 0x0020;
+		
+		private final Expression expression;
+		private final boolean unary;
+		private final ByteArrayOutputStream poolBytes = new ByteArrayOutputStream();
+		private final DataOutputStream pool = new DataOutputStream(poolBytes);
+		private final Map<Object, Integer> poolIndex = new HashMap<>();
+		private int poolCount = 1;
+		
+		ClassWriter(Expression expression) {
+			this.expression = expression;
+			this.unary = expression.variableCount() <= 1;
+		}
+		
+		byte[] write() {
+			try {
+				int thisClass = classRef("ExpressionCompiler$Compiled");
+				int superClass = classRef("java/lang/Object");
+				int compiledInterface = classRef("CompiledExpression");
+				int unaryInterface = unary ? classRef("java/util/function/DoubleUnaryOperator") : 0;
+				int objectInit = methodRef(superClass, "<init>", "()V");
+				int codeName = utf8("Code");
+				
+				byte[] init = {(byte) ALOAD_0, (byte) INVOKESPECIAL, (byte) (objectInit >> 8), (byte) objectInit, (byte) RETURN};
+				byte[] evaluate = body(false);
+				byte[] applyAsDouble = unary ? body(true) : null;
+				int stackWords = 2 * expression.maxStack + 2;
+				
+				ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+				DataOutputStream out = new DataOutputStream(bytes);
+				// Method names and descriptors must be in the pool before it is written
+				int initName = utf8("<init>"), initType = utf8("()V");
+				int evaluateName = utf8("evaluate"), evaluateType = utf8("([D)D");
+				int applyName = unary ? utf8("applyAsDouble") : 0, applyType = unary ? utf8("(D)D") : 0;
+				
+				out.writeInt(0xCAFEBABE);
+				out.writeShort(0);
+				out.writeShort(CLASS_FILE_VERSION);
+				out.writeShort(poolCount);
+				pool.flush();
+				poolBytes.writeTo(out);
+				out.writeShort(ACC_PUBLIC | ACC_FINAL | ACC_SUPER);
+				out.writeShort(thisClass);
+				out.writeShort(superClass);
+				out.writeShort(unary ? 2 : 1);
+				out.writeShort(compiledInterface);
+				if (unary) out.writeShort(unaryInterface);
+				out.writeShort(0); // fields
+				out.writeShort(unary ? 3 : 2);
+				method(out, initName, initType, codeName, 1, 1, init);
+				method(out, evaluateName, evaluateType, codeName, stackWords, 2, evaluate);
+				if (unary) method(out, applyName, applyType, codeName, stackWords, 3, applyAsDouble);
+				out.writeShort(0); // class attributes
+				return bytes.toByteArray();
+			}
+			catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		}
+		
+		// The expression as straight-line code. Variables are read from the
+		// double[] in local 1, or for the unary form taken from the double
+		// parameter in locals 1-2.
+		private byte[] body(boolean unaryForm) throws IOException {
+			ByteArrayOutputStream code = new ByteArrayOutputStream();
+			int[] ops = expression.code;
+			for (int pc = 0; pc < ops.length; pc++) {
+				switch (ops[pc]) {
+				case Expression.CONST -> pushConstant(code, expression.constants[ops[++pc]]);
+				case Expression.VAR -> {
+					int index = ops[++pc];
+					if (unaryForm) {
+						code.write(DLOAD_1);
+					}
+					else {
+						code.write(ALOAD_1);
+						pushInt(code, index);
+						code.write(DALOAD);
+					}
+				}
+				case Expression.ADD -> code.write(DADD);
+				case Expression.SUB -> code.write(DSUB);
+				case Expression.MUL -> code.write(DMUL);
+				case Expression.DIV -> code.write(DDIV);
+				case Expression.MOD -> code.write(DREM);
+				case Expression.NEG -> code.write(DNEG);
+				default -> throw new IllegalStateException("Unknown operation code: " + ops[pc]);
+				}
+			}
+			code.write(DRETURN);
+			if (code.size() > MAX_CODE_LENGTH) throw new IllegalArgumentException("Expression too long to compile");
+			return code.toByteArray();
+		}
+		
+		private void pushConstant(ByteArrayOutputStream code, double value) throws IOException {
+			long bits = Double.doubleToRawLongBits(value);
+			if (bits == Double.doubleToRawLongBits(0.0)) code.write(DCONST_0);
+			else if (bits == Double.doubleToRawLongBits(1.0)) code.write(DCONST_1);
+			else {
+				int index = doubleConstant(value);
+				code.write(LDC2_W);
+				code.write(index >> 8);
+				code.write(index);
+			}
+		}
+		
+		private static void pushInt(ByteArrayOutputStream code, int value) {
+			if (value <= 5) code.write(ICONST_0 + value);
+			else if (value <= Byte.MAX_VALUE) {
+				code.write(BIPUSH);
+				code.write(value);
+			}
+			else if (value <= Short.MAX_VALUE) {
+				code.write(SIPUSH);
+				code.write(value >> 8);
+				code.write(value);
+			}
+			else throw new IllegalArgumentException("Too many variables to compile");
+		}
+		
+		private static void method(DataOutputStream out, int name, int type, int codeName, int maxStack, int maxLocals, byte[] code) throws IOException {
+			out.writeShort(ACC_PUBLIC);
+			out.writeShort(name);
+			out.writeShort(type);
+			out.writeShort(1); // attributes: just Code
+			out.writeShort(codeName);
+			out.writeInt(2 + 2 + 4 + code.length + 2 + 2);
+			out.writeShort(maxStack);
+			out.writeShort(maxLocals);
+			out.writeInt(code.length);
+			out.write(code);
+			out.writeShort(0); // exception table
+			out.writeShort(0); // code attributes
+		}
+		
+		// Constant pool entries, shared when requested twice
+		
+		private int utf8(String value) throws IOException {
+			Integer index = poolIndex.get(value);
+			if (index != null) return index;
+			pool.writeByte(UTF8);
+			pool.writeUTF(value);
+			return add(value, 1);
+		}
+		
+		private int classRef(String internalName) throws IOException {
+			String key = "class:" + internalName;
+			Integer index = poolIndex.get(key);
+			if (index != null) return index;
+			int name = utf8(internalName);
+			pool.writeByte(CLASS);
+			pool.writeShort(name);
+			return add(key, 1);
+		}
+		
+		private int methodRef(int owner, String name, String descriptor) throws IOException {
+			int nameIndex = utf8(name), typeIndex = utf8(descriptor);
+			pool.writeByte(NAME_AND_TYPE);
+			pool.writeShort(nameIndex);
+			pool.writeShort(typeIndex);
+			int nameAndType = add(new Object(), 1);
+			pool.writeByte(METHODREF);
+			pool.writeShort(owner);
+			pool.writeShort(nameAndType);
+			return add(new Object(), 1);
+		}
+		
+		private int doubleConstant(double value) throws IOException {
+			Long key = Double.doubleToRawLongBits(value);
+			Integer index = poolIndex.get(key);
+			if (index != null) return index;
+			pool.writeByte(DOUBLE);
+			pool.writeDouble(value);
+			return add(key, 2); // Doubles take two pool slots
+		}
+		
+		private int add(Object key, int slots) {
+			if (poolCount + slots > 0xFFFF) throw new IllegalArgumentException("Expression too long to compile");
+			int index = poolCount;
+			poolIndex.put(key, index);
+			poolCount += slots;
+			return index;
+		}
+	}
+}
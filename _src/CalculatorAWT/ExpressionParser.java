@@ -0,0 +1,355 @@
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+// Recursive-descent parser for infix calculator expressions:
+//
+//   expression := term (('+' | '-') term)*
+//   term       := unary (('*' | '/' | '%') unary)*
+//   unary      := ('-' | '+') unary | primary
+//   primary    := number | variable | 'Infinity' | 'NaN' | '(' expression ')'
+//
+// It emits the postfix code of an Expression directly, folding operations
+// whose operands are all constants as it goes. Numbers use Java syntax
+// (including exponents such as 1.0E10), so any result MyCalc displays can
+// be fed back in. A parser instance reuses its buffers between calls, and
+// evaluate() runs the code straight from them without building an
+// Expression, so parsing and evaluating one-off expressions in bulk only
+// allocates when a buffer has to grow.
+public class ExpressionParser {
+	private static final String[] NO_VARIABLES = {};
+	private static final double[] NO_VALUES = {};
+	
+	// Powers of ten that are exact doubles, for the number fast path
+	private static final double[] POWERS_OF_TEN = {
+		1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+		1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+	};
+	private static final long MAX_EXACT_MANTISSA = 1L << 53;
+	// How deeply parentheses and signs may nest. Each level is a few frames
+	// of recursion, and this stays well inside even a small thread stack.
+	static final int MAX_NESTING = 256;
+	
+	private CharSequence input;
+	private int pos;
+	private String[] variables;
+	
+	private int[] code = new int[32];
+	private int codeLength;
+	private double[] constants = new double[16];
+	private int constantCount;
+	// In decimal mode every constant is also kept as an exact BigDecimal,
+	// and nothing is folded in double arithmetic
+	private boolean decimal;
+	private BigDecimal[] decimalConstants = new BigDecimal[16];
+	private int depth, maxDepth;
+	private int nesting;
+	// For each value on the stack at this point of the code: whether it was
+	// pushed by a lone CONST instruction, and can therefore be folded
+	private boolean[] constantSlot = new boolean[16];
+	private double[] stack = new double[16];
+	
+	public Expression parse(CharSequence source) {
+		return parse(source, NO_VARIABLES);
+	}
+	
+	public Expression parse(CharSequence source, String... variables) {
+		compile(source, variables, false);
+		return new Expression(source.toString(), variables.clone(), Arrays.copyOf(code, codeLength),
+				Arrays.copyOf(constants, constantCount), null, maxDepth);
+	}
+	
+	// Parses for exact decimal evaluation (see DecimalExpression): numbers
+	// keep their exact decimal value, and Infinity and NaN are rejected
+	public Expression parseDecimal(CharSequence source, String... variables) {
+		compile(source, variables, true);
+		return new Expression(source.toString(), variables.clone(), Arrays.copyOf(code, codeLength),
+				Arrays.copyOf(constants, constantCount), Arrays.copyOf(decimalConstants, constantCount), maxDepth);
+	}
+	
+	// Parses and evaluates a variable-free expression in one go
+	public double evaluate(CharSequence source) {
+		compile(source, NO_VARIABLES, false);
+		if (stack.length < maxDepth) stack = new double[maxDepth];
+		return Expression.run(code, codeLength, constants, NO_VALUES, stack);
+	}
+	
+	// The distinct names an expression mentions, in order of first use, so
+	// callers can find its variables before parsing it. Infinity and NaN are
+	// left out, and exponents such as the e in 1e5 are not names.
+	static List<String> names(CharSequence source) {
+		List<String> names = new ArrayList<>();
+		int pos = 0;
+		while (pos < source.length()) {
+			char c = source.charAt(pos);
+			if (isDigit(c) || c == '.') {
+				while (pos < source.length() && (isDigit(source.charAt(pos)) || source.charAt(pos) == '.')) pos++;
+				if (pos < source.length() && (source.charAt(pos) == 'e' || source.charAt(pos) == 'E')) {
+					pos++;
+					if (pos < source.length() && (source.charAt(pos) == '+' || source.charAt(pos) == '-')) pos++;
+					while (pos < source.length() && isDigit(source.charAt(pos))) pos++;
+				}
+			}
+			else if (Character.isLetter(c) || c == '_') {
+				int start = pos;
+				while (pos < source.length() && (Character.isLetterOrDigit(source.charAt(pos)) || source.charAt(pos) == '_')) pos++;
+				String name = source.subSequence(start, pos).toString();
+				if (!name.equals("Infinity") && !name.equals("NaN") && !names.contains(name)) names.add(name);
+			}
+			else {
+				pos++;
+			}
+		}
+		return names;
+	}
+	
+	// Parses source into the code buffers
+	private void compile(CharSequence source, String[] variables, boolean decimal) {
+		input = source;
+		this.decimal = decimal;
+		this.variables = variables;
+		pos = 0;
+		codeLength = 0;
+		constantCount = 0;
+		depth = 0;
+		maxDepth = 0;
+		nesting = 0;
+		try {
+			skipSpaces();
+			if (pos == input.length()) throw error("Empty expression");
+			expression();
+			if (pos != input.length()) throw error("Unexpected '" + input.charAt(pos) + "'");
+		}
+		finally {
+			input = null;
+			this.variables = null;
+		}
+	}
+	
+	private void expression() {
+		term();
+		while (true) {
+			if (accept('+')) { term(); emitBinary(Expression.ADD); }
+			else if (accept('-')) { term(); emitBinary(Expression.SUB); }
+			else return;
+		}
+	}
+	
+	private void term() {
+		unary();
+		while (true) {
+			if (accept('*')) { unary(); emitBinary(Expression.MUL); }
+			else if (accept('/')) { unary(); emitBinary(Expression.DIV); }
+			else if (accept('%')) { unary(); emitBinary(Expression.MOD); }
+			else return;
+		}
+	}
+	
+	private void unary() {
+		if (++nesting > MAX_NESTING) throw error("Nested more than " + MAX_NESTING + " deep");
+		if (accept('-')) {
+			unary();
+			emitNegate();
+		}
+		else if (accept('+')) {
+			unary();
+		}
+		else {
+			primary();
+		}
+		nesting--;
+	}
+	
+	private void primary() {
+		if (accept('(')) {
+			expression();
+			if (!accept(')')) throw error("Missing ')'");
+			return;
+		}
+		if (pos < input.length()) {
+			char c = input.charAt(pos);
+			if ((c >= '0' && c <= '9') || c == '.') {
+				number();
+				return;
+			}
+			if (Character.isLetter(c) || c == '_') {
+				name();
+				return;
+			}
+		}
+		throw error(pos < input.length() ? "Unexpected '" + input.charAt(pos) + "'" : "Unexpected end of expression");
+	}
+	
+	// Numbers are read digit by digit into a long mantissa and a decimal
+	// exponent. When both are small enough the value is exactly
+	// mantissa * 10^exponent in a single correctly rounded double operation,
+	// which is what Double.parseDouble would return. Only the rest (more
+	// than 15-16 significant digits, huge exponents) goes through a String.
+	private void number() {
+		int start = pos;
+		long mantissa = 0;
+		int exponent = 0;
+		boolean exact = true;
+		char c;
+		while (pos < input.length() && isDigit(c = input.charAt(pos))) {
+			if (mantissa < MAX_EXACT_MANTISSA) mantissa = mantissa * 10 + (c - '0');
+			else exact = false;
+			pos++;
+		}
+		if (pos < input.length() && input.charAt(pos) == '.') {
+			pos++;
+			while (pos < input.length() && isDigit(c = input.charAt(pos))) {
+				if (mantissa < MAX_EXACT_MANTISSA) {
+					mantissa = mantissa * 10 + (c - '0');
+					exponent--;
+				}
+				else exact = false;
+				pos++;
+			}
+		}
+		if (pos < input.length() && (input.charAt(pos) == 'e' || input.charAt(pos) == 'E')) {
+			pos++;
+			boolean negative = false;
+			if (pos < input.length() && (input.charAt(pos) == '+' || input.charAt(pos) == '-')) negative = input.charAt(pos++) == '-';
+			if (pos == input.length() || !isDigit(input.charAt(pos))) throw error("Malformed exponent");
+			int written = 0;
+			while (pos < input.length() && isDigit(c = input.charAt(pos))) {
+				// Past this the double is 0 or Infinity anyway; exact decimals
+				// are then taken from the text
+				if (written < 10000) written = written * 10 + (c - '0');
+				else exact = false;
+				pos++;
+			}
+			exponent += negative ? -written : written;
+		}
+		if (pos - start == 1 && input.charAt(start) == '.') throw error("Malformed number");
+		
+		if (decimal) {
+			// exact means every digit made it into the mantissa
+			emitDecimal(exact ? BigDecimal.valueOf(mantissa, -exponent) : new BigDecimal(input.subSequence(start, pos).toString()));
+			skipSpaces();
+			return;
+		}
+		
+		double value = exact ? exactValue(mantissa, exponent) : Double.NaN;
+		if (Double.isNaN(value)) value = Double.parseDouble(input.subSequence(start, pos).toString());
+		emitConstant(value);
+		skipSpaces();
+	}
+	
+	private void name() {
+		int start = pos;
+		while (pos < input.length() && (Character.isLetterOrDigit(input.charAt(pos)) || input.charAt(pos) == '_')) pos++;
+		String name = input.subSequence(start, pos).toString();
+		for (int i = 0; i < variables.length; i++) {
+			if (variables[i].equals(name)) {
+				emitVariable(i);
+				skipSpaces();
+				return;
+			}
+		}
+		if (decimal) {
+			pos = start;
+			throw error("'" + name + "' is not a decimal number");
+		}
+		switch (name) {
+		case "Infinity" -> emitConstant(Double.POSITIVE_INFINITY);
+		case "NaN" -> emitConstant(Double.NaN);
+		default -> {
+			pos = start;
+			throw error("Unknown name '" + name + "'");
+		}
+		}
+		skipSpaces();
+	}
+	
+	// mantissa * 10^exponent when a single double operation gives it exactly
+	// (as Double.parseDouble would), otherwise NaN
+	private static double exactValue(long mantissa, int exponent) {
+		if (mantissa <= MAX_EXACT_MANTISSA && exponent >= -22 && exponent <= 22) {
+			return exponent >= 0 ? mantissa * POWERS_OF_TEN[exponent] : mantissa / POWERS_OF_TEN[-exponent];
+		}
+		return mantissa == 0 ? 0 : Double.NaN;
+	}
+	
+	private static boolean isDigit(char c) {
+		return c >= '0' && c <= '9';
+	}
+	
+	private boolean accept(char c) {
+		if (pos < input.length() && input.charAt(pos) == c) {
+			pos++;
+			skipSpaces();
+			return true;
+		}
+		return false;
+	}
+	
+	private void skipSpaces() {
+		while (pos < input.length() && Character.isWhitespace(input.charAt(pos))) pos++;
+	}
+	
+	private IllegalArgumentException error(String message) {
+		return new IllegalArgumentException(message + " at position " + pos + " in \"" + input + "\"");
+	}
+	
+	// Emitting code. Operands that are plain constants are folded away, so
+	// e.g. "2*(3+4)" compiles to the single constant 14.
+	
+	// When both operands of an operation are lone constants, they must be
+	// the last two instructions emitted and the two newest constants
+	
+	private void emitConstant(double value) {
+		if (constantCount == constants.length) constants = Arrays.copyOf(constants, constantCount * 2);
+		constants[constantCount] = value;
+		emit(Expression.CONST);
+		emit(constantCount++);
+		push(true);
+	}
+	
+	private void emitDecimal(BigDecimal value) {
+		if (constantCount == decimalConstants.length) decimalConstants = Arrays.copyOf(decimalConstants, constantCount * 2);
+		decimalConstants[constantCount] = value;
+		emitConstant(value.doubleValue());
+	}
+	
+	private void emitVariable(int index) {
+		emit(Expression.VAR);
+		emit(index);
+		push(false);
+	}
+	
+	private void emitBinary(int operation) {
+		if (!decimal && constantSlot[depth - 1] && constantSlot[depth - 2]) {
+			double b = constants[--constantCount];
+			double a = constants[--constantCount];
+			codeLength -= 4;
+			depth -= 2;
+			emitConstant(Expression.apply(operation, a, b));
+			return;
+		}
+		emit(operation);
+		depth--;
+		constantSlot[depth - 1] = false;
+	}
+	
+	private void emitNegate() {
+		if (!decimal && constantSlot[depth - 1]) {
+			constants[constantCount - 1] = -constants[constantCount - 1];
+			return;
+		}
+		emit(Expression.NEG);
+	}
+	
+	private void push(boolean constant) {
+		if (depth == constantSlot.length) constantSlot = Arrays.copyOf(constantSlot, depth * 2);
+		constantSlot[depth++] = constant;
+		maxDepth = Math.max(maxDepth, depth);
+	}
+	
+	private void emit(int value) {
+		if (codeLength == code.length) code = Arrays.copyOf(code, codeLength * 2);
+		code[codeLength++] = value;
+	}
+}
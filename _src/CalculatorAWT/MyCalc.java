@@ -1,22 +1,37 @@
 import java.awt.*;
 import java.awt.event.*;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.math.RoundingMode;
 class MyCalc extends WindowAdapter implements ActionListener {
 	private Frame f;
 	private Label l1;
 	private Button b1,b2,b3,b4,b5,b6,b7,b8,b9,b0;
 	private Button bAdd, bSub, bMult, bDiv, bMod, bCalc, bClr, bPts, bNeg, bBack;
 	
-	private StringBuilder currentInput;
-	private double num1, num2;
-	private int operation;
+	// The buttons type an infix expression: everything up to the last
+	// operator goes into expression, the number being typed into currentInput
+	private StringBuilder expression;
+	private NumberInput currentInput;
+	private final StringBuilder display = new StringBuilder();
+	private final ExpressionParser parser = new ExpressionParser();
+	// Set for exact decimal mode, null for the usual double arithmetic
+	private final MathContext decimalContext;
 	
 	MyCalc(){
-		f = new Frame("MyCalculator");
+		this(null);
+	}
+	
+	MyCalc(MathContext decimalContext){
+		this.decimalContext = decimalContext;
+		f = new Frame(decimalContext==null ? "MyCalculator" : "MyCalculator (exact)");
 		f.setSize(360,500);
 		f.setLayout(null);
 		f.setResizable(false);
 		
-		currentInput = new StringBuilder();
+		expression = new StringBuilder();
+		currentInput = new NumberInput();
 		
 		//Labels
 		l1 = new Label();
@@ -101,16 +116,16 @@ class MyCalc extends WindowAdapter implements ActionListener {
 		// TODO Auto-generated method stub
 		Object source = e.getSource();
 		//check if a number button is clicked
-		if (source==b1) addDigit("1");
-		else if(source==b2) addDigit("2");
-		else if(source==b3) addDigit("3");
-		else if(source==b4) addDigit("4");
-		else if(source==b5) addDigit("5");
-		else if(source==b6) addDigit("6");
-		else if(source==b7) addDigit("7");
-		else if(source==b8) addDigit("8");
-		else if(source==b9) addDigit("9");
-		else if(source==b0) addDigit("0");
+		if (source==b1) addDigit('1');
+		else if(source==b2) addDigit('2');
+		else if(source==b3) addDigit('3');
+		else if(source==b4) addDigit('4');
+		else if(source==b5) addDigit('5');
+		else if(source==b6) addDigit('6');
+		else if(source==b7) addDigit('7');
+		else if(source==b8) addDigit('8');
+		else if(source==b9) addDigit('9');
+		else if(source==b0) addDigit('0');
 		
 		else if(source==bPts) addDecimal();
 		else if(source==bNeg) toggleNegative();
@@ -124,73 +139,93 @@ class MyCalc extends WindowAdapter implements ActionListener {
 		else if(source==bClr) clear();
 		
 	}
-	private void addDigit(String digit)
+	private void addDigit(char digit)
 	{
-		currentInput.append(digit);
-		l1.setText(currentInput.toString());
+		currentInput.addDigit(digit);
+		updateDisplay();
 	}
 	
 	private void addDecimal() {
-		if(currentInput.indexOf(".")==-1) {
-			currentInput.append(".");
-			l1.setText(currentInput.toString());
+		if(currentInput.addDecimal()) {
+			updateDisplay();
 		}
 	}
 	
 	private void toggleNegative() {
-		if(currentInput.length()>0) {
-			if(currentInput.charAt(0)=='-') {
-				currentInput.deleteCharAt(0);
-			}
-			else
-			{
-				currentInput.insert(0,"-");
-			}
-			l1.setText(currentInput.toString());
+		if(!currentInput.isEmpty()) {
+			currentInput.toggleNegative();
+			updateDisplay();
 		}
 	}
 	
 	private void backspace() {
-		if(currentInput.length()>0) {
-			currentInput.deleteCharAt(currentInput.length()-1);
-			l1.setText(currentInput.toString());
+		if(!currentInput.isEmpty()) {
+			currentInput.backspace();
+			updateDisplay();
 		}
 	}
 	private void prepareOperation(int optCode) {
-		if(currentInput.length()>0)
+		if(!currentInput.isEmpty())
 		{
-			num1 = Double.parseDouble(currentInput.toString());
-			operation = optCode;
-			currentInput.setLength(0);
-			l1.setText("");
+			if(currentInput.endsWithExponent() && (optCode==Expression.ADD || optCode==Expression.SUB)) {
+				// Still typing a number such as 1.0E-5
+				currentInput.addExponentSign(Expression.operatorSymbol(optCode));
+				updateDisplay();
+				return;
+			}
+			expression.append(currentInput).append(Expression.operatorSymbol(optCode));
+			currentInput.clear();
+			updateDisplay();
 		}
 	}
+	// Evaluates the whole typed expression with operator precedence, so
+	// 2+3*4 gives 14. The result becomes the input for the next calculation.
+	// A malformed number (such as a lone ".") only shows as an error here.
 	private void calculateResult() {
-		if(currentInput.length()>0) {
-			num2 = Double.parseDouble(currentInput.toString());
-			double result = switch (operation) {
-			case 1 -> num1+num2;
-			case 2 -> num1-num2;
-			case 3 -> num1*num2;
-			case 4 -> num1/num2;
-			case 5 -> num1%num2;
-			default -> 0;
-			};
-			l1.setText(String.valueOf(result));
-			currentInput.setLength(0);
-			currentInput.append(result);
+		if(!currentInput.isEmpty()) {
+			expression.append(currentInput);
+			try {
+				if(decimalContext==null) {
+					currentInput.load(parser.evaluate(expression));
+				}
+				else {
+					BigDecimal exact = new DecimalExpression(parser.parseDecimal(expression), decimalContext).evaluate();
+					currentInput.set(exact.toPlainString());
+				}
+				l1.setText(currentInput.toString());
+			}
+			catch(IllegalArgumentException | ArithmeticException ex) {
+				currentInput.clear();
+				l1.setText("Error");
+			}
+			expression.setLength(0);
 		}
 	}
 	private void clear() {
-		num1 = 0;
-		num2 = 0;
-		operation = 0;
-		currentInput.setLength(0);
+		expression.setLength(0);
+		currentInput.clear();
 		l1.setText("");
 	}
+	private void updateDisplay() {
+		display.setLength(0);
+		l1.setText(display.append(expression).append(currentInput).toString());
+	}
 	
-	public static void main(String[] args)
+	// --exact switches to exact decimal arithmetic, rounded half-even to 34
+	// significant digits unless --precision=<digits> says otherwise (0 = unlimited).
+	// --cells starts the named-cell console (CellSheet) instead of the window.
+	public static void main(String[] args) throws IOException
 	{
-		new MyCalc();
+		boolean exact = false;
+		int precision = MathContext.DECIMAL128.getPrecision();
+		for(String arg : args) {
+			if(arg.equals("--cells")) {
+				CellSheet.main(args);
+				return;
+			}
+			if(arg.equals("--exact")) exact = true;
+			else if(arg.startsWith("--precision=")) precision = Integer.parseInt(arg.substring("--precision=".length()));
+		}
+		new MyCalc(exact ? new MathContext(precision, RoundingMode.HALF_EVEN) : null);
 	}
 }
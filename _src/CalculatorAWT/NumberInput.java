@@ -0,0 +1,91 @@
+import java.util.Arrays;
+
+// The number being typed on MyCalc's keypad, kept in a reusable char buffer
+// so keys and results do not build a String each time. It is a CharSequence
+// of the text shown, which "=" hands to the expression engine along with
+// the rest of the typed expression.
+class NumberInput implements CharSequence {
+	private char[] chars = new char[32];
+	private int length;
+	
+	void addDigit(char digit) {
+		append(digit);
+	}
+	
+	// Adds a decimal point unless the text already has one
+	boolean addDecimal() {
+		for(int i=0;i<length;i++) {
+			if(chars[i]=='.') return false;
+		}
+		append('.');
+		return true;
+	}
+	
+	void toggleNegative() {
+		if(length==0) return;
+		if(chars[0]=='-') {
+			System.arraycopy(chars, 1, chars, 0, --length);
+		}
+		else {
+			append(' ');
+			System.arraycopy(chars, 0, chars, 1, length-1);
+			chars[0] = '-';
+		}
+	}
+	
+	void backspace() {
+		if(length>0) length--;
+	}
+	
+	void clear() {
+		length = 0;
+	}
+	
+	// Shows a result, in Double.toString's format, which reads back as
+	// exactly the same double
+	void load(double value) {
+		if(chars.length<DoubleFormat.MAX_LENGTH) chars = new char[DoubleFormat.MAX_LENGTH];
+		length = DoubleFormat.format(value, chars, 0);
+	}
+	
+	// Shows text, e.g. an exact decimal result
+	void set(CharSequence text) {
+		length = 0;
+		for(int i=0;i<text.length();i++) append(text.charAt(i));
+	}
+	
+	// Whether the text ends in the E of an exponent, as in an edited 1.0E10
+	boolean endsWithExponent() {
+		return length>0 && (chars[length-1]=='E' || chars[length-1]=='e');
+	}
+	
+	void addExponentSign(char sign) {
+		append(sign);
+	}
+	
+	private void append(char c) {
+		if(length==chars.length) chars = Arrays.copyOf(chars, length*2);
+		chars[length++] = c;
+	}
+	
+	@Override
+	public int length() {
+		return length;
+	}
+	
+	@Override
+	public char charAt(int index) {
+		if(index<0 || index>=length) throw new IndexOutOfBoundsException(index);
+		return chars[index];
+	}
+	
+	@Override
+	public CharSequence subSequence(int start, int end) {
+		return toString().substring(start, end);
+	}
+	
+	@Override
+	public String toString() {
+		return new String(chars, 0, length);
+	}
+}
@@ -0,0 +1,42 @@
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.VectorSpecies;
+
+// Vector API backend for CalcKernels. It needs the incubating
+// jdk.incubator.vector module, so compile and run with
+// --add-modules jdk.incubator.vector; without it CalcKernels quietly uses
+// its scalar loops. There is no lane-wise floating-point remainder, so %
+// always takes the scalar loop.
+class VectorKernels implements CalcKernels.Backend {
+	private static final VectorSpecies<Double> SPECIES = DoubleVector.SPECIES_PREFERRED;
+	
+	@Override
+	public void apply(int operation, double[] a, double[] b, double[] out, int from, int to) {
+		int i = from;
+		int upper = from + SPECIES.loopBound(to - from);
+		int step = SPECIES.length();
+		switch (operation) {
+		case Expression.ADD -> { for (; i < upper; i += step) DoubleVector.fromArray(SPECIES, a, i).add(DoubleVector.fromArray(SPECIES, b, i)).intoArray(out, i); }
+		case Expression.SUB -> { for (; i < upper; i += step) DoubleVector.fromArray(SPECIES, a, i).sub(DoubleVector.fromArray(SPECIES, b, i)).intoArray(out, i); }
+		case Expression.MUL -> { for (; i < upper; i += step) DoubleVector.fromArray(SPECIES, a, i).mul(DoubleVector.fromArray(SPECIES, b, i)).intoArray(out, i); }
+		case Expression.DIV -> { for (; i < upper; i += step) DoubleVector.fromArray(SPECIES, a, i).div(DoubleVector.fromArray(SPECIES, b, i)).intoArray(out, i); }
+		default -> { }
+		}
+		// The tail, and every element for %
+		CalcKernels.SCALAR.apply(operation, a, b, out, i, to);
+	}
+	
+	@Override
+	public void apply(int operation, double[] a, double b, double[] out, int from, int to) {
+		int i = from;
+		int upper = from + SPECIES.loopBound(to - from);
+		int step = SPECIES.length();
+		switch (operation) {
+		case Expression.ADD -> { for (; i < upper; i += step) DoubleVector.fromArray(SPECIES, a, i).add(b).intoArray(out, i); }
+		case Expression.SUB -> { for (; i < upper; i += step) DoubleVector.fromArray(SPECIES, a, i).sub(b).intoArray(out, i); }
+		case Expression.MUL -> { for (; i < upper; i += step) DoubleVector.fromArray(SPECIES, a, i).mul(b).intoArray(out, i); }
+		case Expression.DIV -> { for (; i < upper; i += step) DoubleVector.fromArray(SPECIES, a, i).div(b).intoArray(out, i); }
+		default -> { }
+		}
+		CalcKernels.SCALAR.apply(operation, a, b, out, i, to);
+	}
+}
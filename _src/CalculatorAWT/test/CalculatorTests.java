@@ -0,0 +1,481 @@
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.function.DoubleUnaryOperator;
+
+// Checks for the calculator engine. There is no test framework in this
+// project, so this is a plain program: it prints each check and exits with
+// status 1 if any of them fails.
+//
+//   javac --add-modules jdk.incubator.vector -d out *.java test/*.java
+//   java -cp out CalculatorTests
+//
+// Add --add-modules jdk.incubator.vector to the java command to check the
+// Vector API kernels rather than the scalar ones.
+public class CalculatorTests {
+	private static int failures;
+	
+	public static void main(String[] args) {
+		run("parserPrecedence", CalculatorTests::parserPrecedence);
+		run("parserUnaryMinus", CalculatorTests::parserUnaryMinus);
+		run("parserRemainder", CalculatorTests::parserRemainder);
+		run("parserNumbers", CalculatorTests::parserNumbers);
+		run("parserVariables", CalculatorTests::parserVariables);
+		run("parserErrorPositions", CalculatorTests::parserErrorPositions);
+		run("compileTooLongExpression", CalculatorTests::compileTooLongExpression);
+		run("kernelsMatchApply", CalculatorTests::kernelsMatchApply);
+		run("kernelsEvaluateExpressions", CalculatorTests::kernelsEvaluateExpressions);
+		run("nestingLimit", CalculatorTests::nestingLimit);
+		run("batchNestingLimit", CalculatorTests::batchNestingLimit);
+		run("batchChunks", CalculatorTests::batchChunks);
+		run("decimalHugeExponents", CalculatorTests::decimalHugeExponents);
+		run("decimalNegateRounds", CalculatorTests::decimalNegateRounds);
+		run("cellSheetRejectsCycles", CalculatorTests::cellSheetRejectsCycles);
+		run("cellSheetRecomputedCounts", CalculatorTests::cellSheetRecomputedCounts);
+		run("cellSheetMatchesFullRecompute", CalculatorTests::cellSheetMatchesFullRecompute);
+		run("formatMatchesToString", CalculatorTests::formatMatchesToString);
+		run("formatShortest", CalculatorTests::formatShortest);
+		if (failures > 0) {
+			System.out.println(failures + " failed");
+			System.exit(1);
+		}
+		System.out.println("All passed");
+	}
+	
+	private interface Check {
+		void run() throws Exception;
+	}
+	
+	private static void run(String name, Check test) {
+		try {
+			test.run();
+			System.out.println("ok   " + name);
+		}
+		catch (Exception | Error e) {
+			failures++;
+			System.out.println("FAIL " + name + ": " + e);
+		}
+	}
+	
+	private static void parserPrecedence() {
+		ExpressionParser parser = new ExpressionParser();
+		check(parser.evaluate("2+3*4"), 14);
+		check(parser.evaluate("(2+3)*4"), 20);
+		check(parser.evaluate("10-4-3"), 3);
+		check(parser.evaluate("64/4/2"), 8);
+		check(parser.evaluate("2*3+4*5-6/3"), 24);
+		check(parser.evaluate("1 + 2 * (3 - (4 - 5)) / 8"), 2);
+		check(parser.evaluate(" 7 "), 7);
+	}
+	
+	private static void parserUnaryMinus() {
+		ExpressionParser parser = new ExpressionParser();
+		check(parser.evaluate("-3"), -3);
+		check(parser.evaluate("--3"), 3);
+		check(parser.evaluate("+-3"), -3);
+		check(parser.evaluate("2*-3"), -6);
+		check(parser.evaluate("2--3"), 5);
+		check(parser.evaluate("-(2+3)*2"), -10);
+		check(parser.evaluate("-0"), -0.0);
+		check(Expression.parse("-x", "x").evaluate(new double[] {0}), -0.0);
+	}
+	
+	// % is Java's remainder: same precedence as * and /, sign of the dividend
+	private static void parserRemainder() {
+		ExpressionParser parser = new ExpressionParser();
+		check(parser.evaluate("7%3"), 1);
+		check(parser.evaluate("-7%3"), -1);
+		check(parser.evaluate("7%-3"), 1);
+		check(parser.evaluate("5.5%2"), 1.5);
+		check(parser.evaluate("1+7%3*2"), 3);
+		check(parser.evaluate("1%0"), Double.NaN);
+	}
+	
+	// Numbers read exactly as Double.parseDouble reads them
+	private static void parserNumbers() {
+		ExpressionParser parser = new ExpressionParser();
+		String[] numbers = {"0.1", ".5", "5.", "1e10", "1.0E-5", "2.5E+3", "123456789012345678901234567890", "0.30000000000000004",
+				"4.9E-324", "1.7976931348623157E308", "1e400", "9007199254740993", "0.000001"};
+		for (String number : numbers) check(parser.evaluate(number), Double.parseDouble(number));
+		check(parser.evaluate("Infinity"), Double.POSITIVE_INFINITY);
+		check(parser.evaluate("-Infinity"), Double.NEGATIVE_INFINITY);
+		check(parser.evaluate("NaN"), Double.NaN);
+		check(parser.evaluate("0.1+0.2"), 0.1 + 0.2);
+	}
+	
+	private static void parserVariables() {
+		Expression price = Expression.parse("base * (1 + tax) - discount", "base", "tax", "discount");
+		check(price.evaluate(new double[] {100, 0.2, 5}), 100 * (1 + 0.2) - 5);
+		check(price.evaluate(new double[] {50, 0, 0}), 50);
+		check(price.variableCount(), 3);
+		check(String.join(",", ExpressionParser.names("net * (1 + tax) + 1e5 + net + Infinity")), "net,tax");
+	}
+	
+	private static void parserErrorPositions() {
+		checkError("", "Empty expression at position 0");
+		checkError("1+", "Unexpected end of expression at position 2");
+		checkError("(1+2", "Missing ')' at position 4");
+		checkError("1+2)", "Unexpected ')' at position 3");
+		checkError("2*/3", "Unexpected '/' at position 2");
+		checkError("1 + foo", "Unknown name 'foo' at position 4");
+		checkError("1e+", "Malformed exponent at position 3");
+		checkError(".", "Malformed number at position 1");
+	}
+	
+	private static void checkError(String source, String message) {
+		try {
+			new ExpressionParser().evaluate(source);
+		}
+		catch (IllegalArgumentException e) {
+			check(e.getMessage(), message + " in \"" + source + "\"");
+			return;
+		}
+		throw new AssertionError("expected an error for \"" + source + "\"");
+	}
+	
+	// Every kernel gives exactly Expression.apply's result, element by
+	// element, including lengths that are not a multiple of any vector width
+	private static void kernelsMatchApply() {
+		SplittableRandom random = new SplittableRandom(11);
+		double[] special = {0.0, -0.0, 1, -1, 0.1, 3, Double.MIN_VALUE, Double.MAX_VALUE, Double.NaN,
+				Double.POSITIVE_INFINITY, Double.NEGATIVE_INFINITY};
+		for (int length : new int[] {0, 1, 7, 1000, CalcKernels.PARALLEL_THRESHOLD + 3}) {
+			double[] a = new double[length], b = new double[length];
+			for (int i = 0; i < length; i++) {
+				a[i] = i < special.length ? special[i] : random.nextDouble(-1e6, 1e6);
+				b[i] = i < special.length ? special[special.length - 1 - i] : random.nextInt(4) == 0 ? 0 : random.nextDouble(-100, 100);
+			}
+			for (int operation = Expression.ADD; operation <= Expression.MOD; operation++) {
+				double scalar = special[operation];
+				for (CalcKernels kernels : new CalcKernels[] {CalcKernels.SEQUENTIAL, CalcKernels.PARALLEL}) {
+					double[] out = new double[length];
+					kernels.apply(operation, a, b, out);
+					for (int i = 0; i < length; i++) check(out[i], Expression.apply(operation, a[i], b[i]));
+					kernels.apply(operation, a, scalar, out);
+					for (int i = 0; i < length; i++) check(out[i], Expression.apply(operation, a[i], scalar));
+				}
+				double[] out = new double[length];
+				CalcKernels.SCALAR.apply(operation, a, b, out, 0, length);
+				for (int i = 0; i < length; i++) check(out[i], Expression.apply(operation, a[i], b[i]));
+			}
+		}
+		checkThrows(IllegalArgumentException.class, () -> CalcKernels.SEQUENTIAL.apply(Expression.ADD, new double[2], new double[3], new double[2]));
+		checkThrows(IllegalArgumentException.class, () -> CalcKernels.SEQUENTIAL.apply(Expression.NEG, new double[2], 1, new double[2]));
+	}
+	
+	// Column-wise evaluation matches evaluating the expression row by row
+	private static void kernelsEvaluateExpressions() {
+		SplittableRandom random = new SplittableRandom(12);
+		int rows = CalcKernels.PARALLEL_THRESHOLD + 1500;
+		double[][] columns = new double[3][rows];
+		for (double[] column : columns) {
+			for (int i = 0; i < rows; i++) column[i] = random.nextDouble(-50, 50);
+		}
+		columns[2][5] = 0;
+		for (String source : new String[] {"base * (1 + tax) - discount", "-base % (tax - discount) / 3", "2 + 3", "-(-base) * base + tax * discount"}) {
+			Expression expression = Expression.parse(source, "base", "tax", "discount");
+			for (CalcKernels kernels : new CalcKernels[] {CalcKernels.SEQUENTIAL, CalcKernels.PARALLEL}) {
+				double[] out = new double[rows];
+				kernels.evaluate(expression, columns, out);
+				for (int i = 0; i < rows; i++) {
+					check(out[i], expression.evaluate(new double[] {columns[0][i], columns[1][i], columns[2][i]}));
+				}
+			}
+		}
+	}
+	
+	// Too long for one method, so it is interpreted, but still usable as both interfaces
+	private static void compileTooLongExpression() {
+		int terms = 40_000;
+		StringBuilder source = new StringBuilder("x");
+		for (int i = 1; i < terms; i++) source.append("+x");
+		DoubleUnaryOperator unary = ExpressionCompiler.compileUnary(source.toString(), "x");
+		check(unary.applyAsDouble(0.5), terms * 0.5);
+		check(((CompiledExpression) unary).evaluate(new double[] {2}), terms * 2.0);
+	}
+	
+	// Deep nesting is an ordinary parse error rather than a StackOverflowError
+	private static void nestingLimit() {
+		int limit = ExpressionParser.MAX_NESTING;
+		ExpressionParser parser = new ExpressionParser();
+		check(parser.evaluate("(".repeat(limit - 1) + "1" + ")".repeat(limit - 1)), 1);
+		check(parser.evaluate("-".repeat(limit - 1) + "1"), -1);
+		checkThrows(IllegalArgumentException.class, () -> parser.evaluate("(".repeat(limit) + "1" + ")".repeat(limit)));
+		checkThrows(IllegalArgumentException.class, () -> parser.evaluate("(".repeat(200_000) + "1"));
+		checkThrows(IllegalArgumentException.class, () -> parser.evaluate("-".repeat(200_000) + "1"));
+	}
+	
+	// A line nested too deeply is written as "Error" and the run carries on
+	private static void batchNestingLimit() throws Exception {
+		Path input = Files.createTempFile("calc", ".in");
+		Path output = Files.createTempFile("calc", ".out");
+		try {
+			Files.writeString(input, "1+1\n" + "(".repeat(200_000) + "1\n2*3\n");
+			long[] totals = BatchCalc.run(input, output, 1);
+			check(Files.readString(output), "2.0\nError\n6.0\n");
+			check(totals[1], 1);
+		}
+		finally {
+			Files.delete(input);
+			Files.delete(output);
+		}
+	}
+	
+	// Chunks are spread over the threads, and however the input is cut the
+	// output is every line's result in order
+	private static void batchChunks() throws Exception {
+		check(BatchCalc.chunkSize(1 << 20, 4) < (1 << 20) / 4, "a small file is split between threads");
+		check(BatchCalc.chunkSize(1L << 30, 32) * 13 <= 8 << 20, "chunk output is bounded");
+		check(BatchCalc.chunkSize(100, 8) > 0, "tiny files still make progress");
+		
+		SplittableRandom random = new SplittableRandom(3);
+		StringBuilder lines = new StringBuilder();
+		StringBuilder expected = new StringBuilder();
+		ExpressionParser parser = new ExpressionParser();
+		String[] operators = {"+", "-", "*", "/", "%"};
+		for (int i = 0; i < 200_000; i++) {
+			String line = switch (random.nextInt(4)) {
+			case 0 -> random.nextInt(100) + operators[random.nextInt(5)] + random.nextInt(10);
+			case 1 -> "(" + random.nextDouble() + ")*-" + random.nextInt(1000);
+			case 2 -> "1/" + (random.nextInt(20) + 1) + "e" + random.nextInt(-300, 300);
+			default -> random.nextInt(3) == 0 ? "2*(" : String.valueOf(random.nextLong());
+			};
+			lines.append(line).append(i % 7 == 0 ? "\r\n" : "\n");
+			String result;
+			try {
+				result = String.valueOf(parser.evaluate(line));
+			}
+			catch (IllegalArgumentException e) {
+				result = "Error";
+			}
+			expected.append(result).append('\n');
+		}
+		Path input = Files.createTempFile("calc", ".in");
+		Path output = Files.createTempFile("calc", ".out");
+		try {
+			Files.writeString(input, lines);
+			for (int threads : new int[] {1, 3, 8}) {
+				BatchCalc.run(input, output, threads);
+				check(Files.readString(output).equals(expected.toString()), "output with " + threads + " threads");
+			}
+		}
+		finally {
+			Files.delete(input);
+			Files.delete(output);
+		}
+	}
+	
+	// Exponents with more digits than the parser accumulates are still exact
+	private static void decimalHugeExponents() {
+		for (String number : new String[] {"1e123456", "1e-123456", "2.5E+1234567", "7e-0000123456"}) {
+			BigDecimal value = DecimalExpression.parse(number, MathContext.UNLIMITED).evaluate();
+			check(value.compareTo(new BigDecimal(number)) == 0 && value.scale() == new BigDecimal(number).scale(), number);
+		}
+		check(new ExpressionParser().evaluate("1e123456"), Double.POSITIVE_INFINITY);
+		check(new ExpressionParser().evaluate("1e-123456"), 0);
+	}
+	
+	// Negation rounds to the precision whether the operand fits a long or not
+	private static void decimalNegateRounds() {
+		MathContext three = new MathContext(3);
+		for (String operand : new String[] {"12345", "0.012345", "999", "99999999999999999999999"}) {
+			BigDecimal expected = new BigDecimal(operand).negate(three);
+			check(DecimalExpression.parse("-(" + operand + ")", three).evaluate(), expected);
+			check(DecimalExpression.parse("-" + operand, three).evaluate(), expected);
+		}
+	}
+	
+	// A formula closing a loop through a long chain of cells is rejected and
+	// leaves the sheet as it was
+	private static void cellSheetRejectsCycles() {
+		CellSheet sheet = new CellSheet();
+		int length = 20_000;
+		sheet.set("c0", 1);
+		for (int i = 1; i < length; i++) sheet.define("c" + i, "c" + (i - 1) + " + 1");
+		StringBuilder formula = new StringBuilder("0");
+		for (int i = 1; i < length; i += 10) formula.append(" + c").append(i);
+		checkThrows(IllegalArgumentException.class, () -> sheet.define("c0", formula.toString()));
+		checkThrows(IllegalArgumentException.class, () -> sheet.define("c0", "c0 * 2"));
+		check(sheet.formula("c0") == null, "c0 keeps its plain value");
+		check(sheet.get("c" + (length - 1)), length);
+		sheet.define("c0", "other + 1");
+		check(sheet.get("c" + (length - 1)), length);
+	}
+	
+	// DoubleFormat.format gives exactly Double.toString's text on this JDK
+	private static void formatMatchesToString() {
+		char[] chars = new char[DoubleFormat.MAX_LENGTH];
+		double[] special = {0.0, -0.0, 1.0, 2.0E-3, 1.0E23, 1.0E-3, 1.0E7, 9999999.0, Double.MIN_VALUE, 2 * Double.MIN_VALUE,
+				Double.MIN_NORMAL, Double.MAX_VALUE, Double.NaN, Double.POSITIVE_INFINITY, Double.NEGATIVE_INFINITY};
+		for (double value : special) check(new String(chars, 0, DoubleFormat.format(value, chars, 0)), String.valueOf(value));
+		SplittableRandom random = new SplittableRandom(42);
+		for (int i = 0; i < 1_000_000; i++) {
+			double value = i % 2 == 0 ? Double.longBitsToDouble(random.nextLong()) : random.nextInt(1_000_000) / 100.0;
+			check(new String(chars, 0, DoubleFormat.format(value, chars, 0)), String.valueOf(value));
+		}
+	}
+	
+	// The shortest digits, as Double.toString prints them from JDK 19 on,
+	// whichever JDK runs the test
+	private static void formatShortest() {
+		char[] chars = new char[DoubleFormat.MAX_LENGTH];
+		Object[] cases = {2.0E-3, "0.002", 1.0E23, "1.0E23", 2 * Double.MIN_VALUE, "9.9E-324", Double.MIN_VALUE, "4.9E-324",
+				1.0E-3, "0.001", 9.999E-4, "9.999E-4", 1.0E7, "1.0E7", 9999999.0, "9999999.0", 0.1 + 0.2, "0.30000000000000004",
+				-Double.MAX_VALUE, "-1.7976931348623157E308", -0.0, "-0.0"};
+		for (int i = 0; i < cases.length; i += 2) {
+			check(new String(chars, 0, DoubleFormat.formatShortest((Double) cases[i], chars, 0)), (String) cases[i + 1]);
+		}
+		SplittableRandom random = new SplittableRandom(7);
+		for (int i = 0; i < 1_000_000; i++) {
+			double value = Double.longBitsToDouble(random.nextLong());
+			if (Double.isNaN(value)) continue;
+			String text = new String(chars, 0, DoubleFormat.formatShortest(value, chars, 0));
+			check(Double.parseDouble(text), value);
+			check(text.length() <= String.valueOf(value).length(), text + " is longer than " + value);
+		}
+	}
+	
+	// Each dependent is evaluated once per change, and an unchanged value
+	// stops the update from spreading
+	private static void cellSheetRecomputedCounts() {
+		CellSheet sheet = new CellSheet();
+		sheet.set("a", 1);
+		check(sheet.lastRecomputed(), 0);
+		sheet.define("b", "a + 1");
+		check(sheet.lastRecomputed(), 1);
+		sheet.define("c", "a * 2");
+		sheet.define("d", "b + c");
+		sheet.define("e", "d * 0");
+		sheet.define("f", "e + 1");
+		sheet.set("a", 5);
+		check(sheet.lastRecomputed(), 4); // b, c, d and e, but not f
+		check(sheet.get("d"), 16);
+		check(sheet.get("f"), 1);
+		sheet.set("a", 5);
+		check(sheet.lastRecomputed(), 0);
+		sheet.define("c", "a * 3");
+		check(sheet.lastRecomputed(), 3); // c, d and e
+		check(sheet.get("d"), 21);
+		check(sheet.formula("d"), "b + c");
+	}
+	
+	// Random edits to a random formula graph always leave every cell with
+	// the value a recompute of the whole sheet from scratch would give
+	private static void cellSheetMatchesFullRecompute() {
+		SplittableRandom random = new SplittableRandom(5);
+		int cells = 40;
+		CellSheet sheet = new CellSheet();
+		Map<String, String> formulas = new HashMap<>();
+		Map<String, Double> values = new HashMap<>();
+		String[] operators = {"+", "-", "*", "/", "%"};
+		for (int step = 0; step < 3000; step++) {
+			String name = "c" + random.nextInt(cells);
+			if (random.nextInt(3) == 0) {
+				double value = random.nextInt(-5, 6);
+				sheet.set(name, value);
+				formulas.remove(name);
+				values.put(name, value);
+			}
+			else {
+				StringBuilder formula = new StringBuilder(String.valueOf(random.nextInt(1, 4)));
+				for (int i = random.nextInt(1, 4); i > 0; i--) {
+					formula.append(' ').append(operators[random.nextInt(5)]).append(" c").append(random.nextInt(cells));
+				}
+				Map<String, String> proposed = new HashMap<>(formulas);
+				proposed.put(name, formula.toString());
+				if (hasCycle(proposed)) {
+					checkThrows(IllegalArgumentException.class, () -> sheet.define(name, formula.toString()));
+				}
+				else {
+					sheet.define(name, formula.toString());
+					formulas.put(name, formula.toString());
+				}
+			}
+			Map<String, Double> expected = new HashMap<>();
+			for (int i = 0; i < cells; i++) {
+				String cell = "c" + i;
+				if (sheet.contains(cell)) check(sheet.get(cell), fullValue(cell, formulas, values, expected));
+			}
+		}
+	}
+	
+	private static double fullValue(String cell, Map<String, String> formulas, Map<String, Double> values, Map<String, Double> done) {
+		Double known = done.get(cell);
+		if (known != null) return known;
+		String formula = formulas.get(cell);
+		double value;
+		if (formula == null) {
+			value = values.getOrDefault(cell, 0.0);
+		}
+		else {
+			List<String> names = ExpressionParser.names(formula);
+			double[] arguments = new double[names.size()];
+			for (int i = 0; i < arguments.length; i++) arguments[i] = fullValue(names.get(i), formulas, values, done);
+			value = Expression.parse(formula, names.toArray(new String[0])).evaluate(arguments);
+		}
+		done.put(cell, value);
+		return value;
+	}
+	
+	private static boolean hasCycle(Map<String, String> formulas) {
+		Map<String, Integer> state = new HashMap<>(); // 1 on the current path, 2 finished
+		List<String> cells = new ArrayList<>(formulas.keySet());
+		for (String cell : cells) {
+			if (visitsCycle(cell, formulas, state)) return true;
+		}
+		return false;
+	}
+	
+	private static boolean visitsCycle(String cell, Map<String, String> formulas, Map<String, Integer> state) {
+		int current = state.getOrDefault(cell, 0);
+		if (current != 0) return current == 1;
+		state.put(cell, 1);
+		String formula = formulas.get(cell);
+		if (formula != null) {
+			for (String input : ExpressionParser.names(formula)) {
+				if (visitsCycle(input, formulas, state)) return true;
+			}
+		}
+		state.put(cell, 2);
+		return false;
+	}
+	
+	private static void check(BigDecimal actual, BigDecimal expected) {
+		if (!actual.equals(expected)) {
+			throw new AssertionError("expected " + expected + " but got " + actual);
+		}
+	}
+	
+	private static void check(boolean condition, String what) {
+		if (!condition) throw new AssertionError(what);
+	}
+	
+	private static void check(double actual, double expected) {
+		if (Double.doubleToLongBits(actual) != Double.doubleToLongBits(expected)) {
+			throw new AssertionError("expected " + expected + " but got " + actual);
+		}
+	}
+	
+	private static void check(String actual, String expected) {
+		if (!actual.equals(expected)) {
+			throw new AssertionError("expected \"" + expected + "\" but got \"" + actual + "\"");
+		}
+	}
+	
+	private static void checkThrows(Class<? extends Throwable> type, Runnable action) {
+		try {
+			action.run();
+		}
+		catch (Throwable e) {
+			if (type.isInstance(e)) return;
+			throw new AssertionError("expected " + type.getSimpleName() + " but got " + e);
+		}
+		throw new AssertionError("expected " + type.getSimpleName() + " but nothing was thrown");
+	}
+}
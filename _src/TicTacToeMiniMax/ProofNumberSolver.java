@@ -0,0 +1,538 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.SplittableRandom;
+
+// Proves positions of N x N, k-in-a-row tic-tac-toe won, lost or drawn with
+// depth-first proof-number search (df-pn, Nagai 2002). Minimax has to look
+// at every line of play; proof-number search only follows the moves that
+// are cheapest to prove or refute, so it settles positions far deeper than
+// minimax can reach.
+//
+// A search answers one yes/no question: can the attacker force a win? The
+// solver asks it first for the side to move (WIN) and then for the
+// opponent (LOSS); when both are refuted the position is a DRAW.
+//
+// Positions are two bitboards (boards up to 8 x 8) with Zobrist hashes, and
+// proof and disproof numbers are kept in a fixed-size transposition table
+// sized from a memory budget, so memory stays bounded however long the
+// search runs. Positions pushed out of a full table are just searched again.
+public class ProofNumberSolver {
+    public enum Outcome { WIN, LOSS, DRAW, UNKNOWN }
+
+    public static final int MAX_SIZE = 8;
+    public static final long DEFAULT_MEMORY = 64L << 20;
+
+    private static final int INFINITY = 1 << 30;
+    private static final int BYTES_PER_ENTRY = 20; // key, proof, disproof, work
+    private static final long PROGRESS_INTERVAL = 1 << 20;
+
+    // Reports how a long search is going. The root's proof and disproof
+    // numbers fall towards 0 as one of the answers gets close.
+    public interface Progress {
+        void report(long nodes, int rootProof, int rootDisproof, int storedPositions);
+    }
+
+    // The proven outcome for the side to move. For WIN and LOSS, moves()
+    // is a principal line of play from the position to the win (the loser
+    // making its most stubborn defence), and line() the k cells it completes.
+    public static final class Result {
+        private final Outcome outcome;
+        private final int[][] moves;
+        private final int[][] line;
+        private final long nodes;
+
+        Result(Outcome outcome, int[][] moves, int[][] line, long nodes) {
+            this.outcome = outcome;
+            this.moves = moves;
+            this.line = line;
+            this.nodes = nodes;
+        }
+
+        public Outcome outcome() {
+            return outcome;
+        }
+
+        // {row, col} pairs, alternating from the side to move
+        public int[][] moves() {
+            return moves;
+        }
+
+        public int[][] line() {
+            return line;
+        }
+
+        public long nodes() {
+            return nodes;
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder text = new StringBuilder(outcome.name());
+            if (moves.length > 0) {
+                text.append(" via");
+                for (int[] move : moves) text.append(' ').append(Arrays.toString(move));
+            }
+            return text.append(" (").append(nodes).append(" nodes)").toString();
+        }
+    }
+
+    private final int size;
+    private final int cells;
+    private final long[] lines;
+    private final int[][] linesThrough; // Indexes into lines, per cell
+    private final int[] moveOrder; // Cells on the most lines first
+    private final long[][] zobrist = new long[2][];
+    private final long sideKey;
+
+    // Transposition table: two-entry buckets, the entry with less work
+    // behind it is the one replaced
+    private final long[] keys;
+    private final int[] proofs, disproofs, works;
+    private final int mask;
+    private int stored;
+
+    private long nodeLimit = Long.MAX_VALUE;
+    private Progress progress;
+
+    // Search state
+    private final long[] stones = new long[2];
+    private int toMove;
+    private int attacker;
+    private long hash;
+    private long nodes;
+    private long nextReport;
+    private boolean aborted;
+    private int rootProof, rootDisproof; // Latest numbers of the start position, for progress reports
+    private int lastProof, lastDisproof; // The numbers search() leaves for its caller
+    private int forcedCell; // The winning cell when a node is decided by an immediate win
+    private int[][] moves;
+    private int[][] childProofs, childDisproofs;
+
+    public ProofNumberSolver(int size, int k) {
+        this(size, k, DEFAULT_MEMORY);
+    }
+
+    public ProofNumberSolver(int size, int k, long memoryBytes) {
+        if (size < 1 || size > MAX_SIZE) throw new IllegalArgumentException("size must be between 1 and " + MAX_SIZE + ": " + size);
+        if (k < 1 || k > size) throw new IllegalArgumentException("k must be between 1 and the board size: " + k);
+        this.size = size;
+        this.cells = size * size;
+
+        List<Long> found = new ArrayList<>();
+        int[][] directions = {{0, 1}, {1, 0}, {1, 1}, {1, -1}};
+        for (int row = 0; row < size; row++) {
+            for (int col = 0; col < size; col++) {
+                for (int[] d : directions) {
+                    int endRow = row + d[0] * (k - 1), endCol = col + d[1] * (k - 1);
+                    if (endRow < 0 || endRow >= size || endCol < 0 || endCol >= size) continue;
+                    long line = 0;
+                    for (int i = 0; i < k; i++) line |= 1L << ((row + d[0] * i) * size + col + d[1] * i);
+                    found.add(line);
+                }
+            }
+        }
+        lines = found.stream().mapToLong(Long::longValue).toArray();
+        linesThrough = new int[cells][];
+        Integer[] order = new Integer[cells];
+        for (int cell = 0; cell < cells; cell++) {
+            int count = 0;
+            for (long line : lines) if ((line & (1L << cell)) != 0) count++;
+            linesThrough[cell] = new int[count];
+            count = 0;
+            for (int i = 0; i < lines.length; i++) if ((lines[i] & (1L << cell)) != 0) linesThrough[cell][count++] = i;
+            order[cell] = cell;
+        }
+        Arrays.sort(order, (a, b) -> linesThrough[b].length - linesThrough[a].length);
+        moveOrder = Arrays.stream(order).mapToInt(Integer::intValue).toArray();
+
+        SplittableRandom random = new SplittableRandom(0x5EED);
+        zobrist[0] = random.longs(cells).toArray();
+        zobrist[1] = random.longs(cells).toArray();
+        sideKey = random.nextLong();
+
+        long entries = Math.max(1024, Math.min(memoryBytes / BYTES_PER_ENTRY, 1 << 30));
+        int capacity = Integer.highestOneBit((int) entries);
+        keys = new long[capacity];
+        proofs = new int[capacity];
+        disproofs = new int[capacity];
+        works = new int[capacity];
+        mask = capacity - 2;
+
+        moves = new int[cells + 1][cells];
+        childProofs = new int[cells + 1][cells];
+        childDisproofs = new int[cells + 1][cells];
+    }
+
+    // Gives up with UNKNOWN after this many nodes per search. Following a
+    // proven win's line gets the same budget again.
+    public void setNodeLimit(long nodeLimit) {
+        this.nodeLimit = nodeLimit;
+    }
+
+    public void setProgress(Progress progress) {
+        this.progress = progress;
+    }
+
+    // board[row][col] holds 'X', 'O' or anything else for an empty cell.
+    // Throws IllegalArgumentException if the board is the wrong size or a
+    // line is already complete, since a finished game has no side to move.
+    public Result solve(char[][] board, char toMove) {
+        if (board.length != size) throw new IllegalArgumentException("Expected a " + size + "x" + size + " board");
+        long[] start = new long[2];
+        for (int row = 0; row < size; row++) {
+            if (board[row].length != size) throw new IllegalArgumentException("Expected a " + size + "x" + size + " board");
+            for (int col = 0; col < size; col++) {
+                if (board[row][col] == 'X') start[0] |= 1L << (row * size + col);
+                else if (board[row][col] == 'O') start[1] |= 1L << (row * size + col);
+            }
+        }
+        if (toMove != 'X' && toMove != 'O') throw new IllegalArgumentException("toMove must be 'X' or 'O': " + toMove);
+        int side = toMove == 'X' ? 0 : 1;
+        for (long line : lines) {
+            if ((line & start[0]) == line || (line & start[1]) == line) throw new IllegalArgumentException("The game is already over");
+        }
+
+        long total = 0;
+        Outcome outcome = Outcome.DRAW;
+        int[][] principal = new int[0][];
+        for (int question = 0; question < 2; question++) {
+            // First: can the side to move win? Then: can the opponent?
+            int result = prove(start, side, question == 0 ? side : 1 - side);
+            total += nodes;
+            if (result < 0) return new Result(Outcome.UNKNOWN, new int[0][], new int[0][], total);
+            if (result == 1) {
+                outcome = question == 0 ? Outcome.WIN : Outcome.LOSS;
+                principal = principalLine(start, side);
+                total += nodes;
+                break;
+            }
+        }
+        int[][] line = new int[0][];
+        if (principal.length > 0) {
+            long mine = stones[attacker];
+            for (long candidate : lines) {
+                if ((candidate & mine) == candidate) {
+                    line = toMoves(candidate);
+                    break;
+                }
+            }
+        }
+        return new Result(outcome, principal, line, total);
+    }
+
+    // 1 if the attacker can force a win from the start position, 0 if not,
+    // -1 if the node limit ran out first
+    private int prove(long[] start, int side, int attacker) {
+        Arrays.fill(keys, 0);
+        Arrays.fill(works, 0);
+        stored = 0;
+        this.attacker = attacker;
+        reset(start, side);
+        nodes = 0;
+        nextReport = PROGRESS_INTERVAL;
+        aborted = false;
+        rootProof = rootDisproof = 1;
+        search(0, -1, INFINITY, INFINITY);
+        if (aborted) return -1;
+        return lastProof == 0 ? 1 : 0;
+    }
+
+    private void reset(long[] start, int side) {
+        stones[0] = start[0];
+        stones[1] = start[1];
+        toMove = side;
+        hash = side == 1 ? sideKey : 0;
+        for (int cell = 0; cell < cells; cell++) {
+            if ((start[0] & (1L << cell)) != 0) hash ^= zobrist[0][cell];
+            if ((start[1] & (1L << cell)) != 0) hash ^= zobrist[1][cell];
+        }
+    }
+
+    // Multiple-iterative deepening: searches below this node until its proof
+    // number reaches proofLimit or its disproof number disproofLimit. Leaves
+    // the node's numbers in lastProof and lastDisproof.
+    private void search(int depth, int lastMove, int proofLimit, int disproofLimit) {
+        nodes++;
+        if (nodes >= nextReport) {
+            nextReport += PROGRESS_INTERVAL;
+            if (progress != null) progress.report(nodes, rootProof, rootDisproof, stored);
+        }
+        if (nodes > nodeLimit) {
+            aborted = true;
+            return;
+        }
+
+        int count = expand(depth, lastMove);
+        if (count <= 0) {
+            // Decided on the spot: -1 the attacker wins, 0 it does not
+            int proof = count < 0 ? 0 : INFINITY;
+            int disproof = count < 0 ? INFINITY : 0;
+            store(hash, proof, disproof, 1);
+            lastProof = proof;
+            lastDisproof = disproof;
+            return;
+        }
+
+        boolean or = toMove == attacker;
+        int[] children = moves[depth];
+        int[] proofs = childProofs[depth];
+        int[] disproofs = childDisproofs[depth];
+        for (int i = 0; i < count; i++) {
+            int slot = find(hash ^ sideKey ^ zobrist[toMove][children[i]]);
+            proofs[i] = slot < 0 ? 1 : this.proofs[slot];
+            disproofs[i] = slot < 0 ? 1 : this.disproofs[slot];
+        }
+
+        long startNodes = nodes;
+        int proof, disproof;
+        while (true) {
+            // At OR nodes (attacker to move) one proven child proves the node
+            // and all must be disproven; AND nodes the other way round
+            int best = 0;
+            int second = INFINITY;
+            int min = INFINITY;
+            long sum = 0;
+            for (int i = 0; i < count; i++) {
+                int near = or ? proofs[i] : disproofs[i];
+                int far = or ? disproofs[i] : proofs[i];
+                if (near < min) {
+                    second = min;
+                    min = near;
+                    best = i;
+                }
+                else if (near < second) {
+                    second = near;
+                }
+                sum = Math.min(INFINITY, sum + far);
+            }
+            proof = or ? min : (int) sum;
+            disproof = or ? (int) sum : min;
+            if (depth == 0) {
+                rootProof = proof;
+                rootDisproof = disproof;
+            }
+            if (proof >= proofLimit || disproof >= disproofLimit || aborted) break;
+
+            int near = or ? proofs[best] : disproofs[best];
+            int far = or ? disproofs[best] : proofs[best];
+            int nearLimit = (int) Math.min(or ? proofLimit : disproofLimit, second + 1L);
+            int farLimit = (int) Math.min(INFINITY, (or ? disproofLimit : proofLimit) - sum + far);
+            int cell = children[best];
+            play(cell);
+            if (or) search(depth + 1, cell, nearLimit, farLimit);
+            else search(depth + 1, cell, farLimit, nearLimit);
+            undo(cell);
+            proofs[best] = lastProof;
+            disproofs[best] = lastDisproof;
+        }
+        store(hash, proof, disproof, (int) Math.min(Integer.MAX_VALUE, nodes - startNodes));
+        lastProof = proof;
+        lastDisproof = disproof;
+    }
+
+    // Lists the moves worth trying into moves[depth] and returns how many
+    // there are, or decides the node: -1 when the attacker has won, 0 when
+    // it no longer can
+    private int expand(int depth, int lastMove) {
+        int mover = toMove;
+        int other = 1 - mover;
+        long mine = stones[mover], theirs = stones[other];
+        long empty = ~(mine | theirs) & (cells == 64 ? -1L : (1L << cells) - 1);
+
+        // Did the last move complete a line?
+        if (lastMove >= 0) {
+            for (int line : linesThrough[lastMove]) {
+                if ((lines[line] & theirs) == lines[line]) return other == attacker ? -1 : 0;
+            }
+        }
+        if (empty == 0) return 0;
+
+        // A line the mover can complete right now ends the game
+        long threats = 0;
+        for (long line : lines) {
+            long open = line & empty;
+            if (Long.bitCount(open) != 1) continue;
+            if ((line & ~open & mine) == (line & ~open)) {
+                forcedCell = Long.numberOfTrailingZeros(open);
+                return mover == attacker ? -1 : 0;
+            }
+            if ((line & ~open & theirs) == (line & ~open)) threats |= open;
+        }
+        // Otherwise the opponent's threats must be blocked, and two at once cannot be
+        if (Long.bitCount(threats) > 1) return other == attacker ? -1 : 0;
+
+        int count = 0;
+        for (int cell : moveOrder) {
+            if ((empty & (1L << cell)) != 0 && (threats == 0 || threats == 1L << cell)) moves[depth][count++] = cell;
+        }
+        return count;
+    }
+
+    private void play(int cell) {
+        stones[toMove] |= 1L << cell;
+        hash ^= zobrist[toMove][cell] ^ sideKey;
+        toMove = 1 - toMove;
+    }
+
+    private void undo(int cell) {
+        toMove = 1 - toMove;
+        stones[toMove] &= ~(1L << cell);
+        hash ^= zobrist[toMove][cell] ^ sideKey;
+    }
+
+    private int find(long key) {
+        int bucket = (int) key & mask;
+        if (keys[bucket] == key && works[bucket] != 0) return bucket;
+        if (keys[bucket + 1] == key && works[bucket + 1] != 0) return bucket + 1;
+        return -1;
+    }
+
+    private void store(long key, int proof, int disproof, int work) {
+        int bucket = (int) key & mask;
+        int slot;
+        if (keys[bucket] == key || works[bucket] == 0) slot = bucket;
+        else if (keys[bucket + 1] == key || works[bucket + 1] == 0) slot = bucket + 1;
+        else slot = works[bucket] <= works[bucket + 1] ? bucket : bucket + 1;
+        if (works[slot] == 0) stored++;
+        keys[slot] = key;
+        proofs[slot] = proof;
+        disproofs[slot] = disproof;
+        works[slot] = Math.max(work, 1);
+    }
+
+    // Follows the proof from the start position: the winner plays a proven
+    // move (an immediate win when there is one), the loser the proven reply
+    // with the most work behind it. Moves are looked up in the table first;
+    // only when no proven move is left in it (entries can be pushed out) is
+    // one proven again, within a fresh node budget. If that runs out, the
+    // line stops where it got to. Counts its nodes in nodes.
+    private int[][] principalLine(long[] start, int side) {
+        reset(start, side);
+        nodes = 0;
+        nextReport = PROGRESS_INTERVAL;
+        aborted = false;
+        List<int[]> line = new ArrayList<>();
+        int lastMove = -1;
+        while (!finished(lastMove)) {
+            forcedCell = -1;
+            expand(0, lastMove);
+            if (forcedCell >= 0 && toMove == attacker) {
+                line.add(new int[] {forcedCell / size, forcedCell % size});
+                play(forcedCell);
+                break;
+            }
+            int chosen = provenInTable();
+            if (chosen < 0) chosen = proveMove();
+            if (chosen < 0) break;
+            line.add(new int[] {chosen / size, chosen % size});
+            play(chosen);
+            lastMove = chosen;
+        }
+        return line.toArray(new int[0][]);
+    }
+
+    // A proven move found in the table without searching: the first one for
+    // the attacker, the one with the most work for the defender; -1 if none
+    private int provenInTable() {
+        int chosen = -1;
+        int mostWork = 0;
+        long occupied = stones[0] | stones[1];
+        for (int cell : moveOrder) {
+            if ((occupied & (1L << cell)) != 0) continue;
+            play(cell);
+            int slot = find(hash);
+            undo(cell);
+            if (slot < 0 || proofs[slot] != 0) continue;
+            if (toMove == attacker) return cell;
+            if (works[slot] > mostWork) {
+                mostWork = works[slot];
+                chosen = cell;
+            }
+        }
+        return chosen;
+    }
+
+    // Searches moves not already known to fail until one is proven; -1 if
+    // the node budget runs out first
+    private int proveMove() {
+        long occupied = stones[0] | stones[1];
+        for (int cell : moveOrder) {
+            if ((occupied & (1L << cell)) != 0) continue;
+            play(cell);
+            int slot = find(hash);
+            boolean refuted = slot >= 0 && disproofs[slot] == 0;
+            if (!refuted) search(1, cell, INFINITY, INFINITY);
+            undo(cell);
+            if (aborted) return -1;
+            if (!refuted && lastProof == 0) return cell;
+        }
+        return -1;
+    }
+
+    // Whether the last move completed a line or filled the board
+    private boolean finished(int lastMove) {
+        if ((stones[0] | stones[1]) == (cells == 64 ? -1L : (1L << cells) - 1)) return true;
+        if (lastMove < 0) return false;
+        long mover = stones[1 - toMove];
+        for (int line : linesThrough[lastMove]) {
+            if ((lines[line] & mover) == lines[line]) return true;
+        }
+        return false;
+    }
+
+    private int[][] toMoves(long cellMask) {
+        int[][] result = new int[Long.bitCount(cellMask)][];
+        for (int i = 0; cellMask != 0; i++, cellMask &= cellMask - 1) {
+            int cell = Long.numberOfTrailingZeros(cellMask);
+            result[i] = new int[] {cell / size, cell % size};
+        }
+        return result;
+    }
+
+    // Usage: java ProofNumberSolver <size> <k> [position] [--memory=MB] [--nodes=N]
+    // The position lists the rows top to bottom separated by '/', with X, O
+    // and '.' for empty cells, e.g. "X../.O./..."; X moves first, so the side
+    // to move follows from the number of stones.
+    public static void main(String[] args) {
+        if (args.length < 2) {
+            System.err.println("Usage: java ProofNumberSolver <size> <k> [position] [--memory=MB] [--nodes=N]");
+            System.exit(1);
+        }
+        int size = Integer.parseInt(args[0]);
+        int k = Integer.parseInt(args[1]);
+        long memory = DEFAULT_MEMORY;
+        long nodeLimit = Long.MAX_VALUE;
+        String position = null;
+        for (int i = 2; i < args.length; i++) {
+            if (args[i].startsWith("--memory=")) memory = Long.parseLong(args[i].substring("--memory=".length())) << 20;
+            else if (args[i].startsWith("--nodes=")) nodeLimit = Long.parseLong(args[i].substring("--nodes=".length()));
+            else position = args[i];
+        }
+
+        char[][] board = new char[size][size];
+        int xs = 0, os = 0;
+        String[] rows = position == null ? new String[0] : position.split("/");
+        for (int row = 0; row < size; row++) {
+            for (int col = 0; col < size; col++) {
+                char c = row < rows.length && col < rows[row].length() ? Character.toUpperCase(rows[row].charAt(col)) : '.';
+                board[row][col] = c;
+                if (c == 'X') xs++;
+                else if (c == 'O') os++;
+            }
+        }
+        char toMove = xs > os ? 'O' : 'X';
+
+        ProofNumberSolver solver = new ProofNumberSolver(size, k, memory);
+        solver.setNodeLimit(nodeLimit);
+        long start = System.nanoTime();
+        solver.setProgress((nodes, proof, disproof, positions) -> System.err.printf(
+                "%,d nodes, root proof %d / disproof %d, %,d positions stored, %.1f s%n",
+                nodes, proof, disproof, positions, (System.nanoTime() - start) / 1e9));
+        Result result = solver.solve(board, toMove);
+        double seconds = (System.nanoTime() - start) / 1e9;
+        System.out.println(size + "x" + size + ", " + k + " in a row, " + toMove + " to move: " + result);
+        if (result.line().length > 0) System.out.println("Completes the line " + Arrays.deepToString(result.line()));
+        System.out.printf("%.2f s, %,.0f nodes/sec%n", seconds, result.nodes() / Math.max(seconds, 1e-9));
+    }
+}
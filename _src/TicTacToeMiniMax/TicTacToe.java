@@ -10,11 +10,14 @@ public class TicTacToe extends Frame implements MouseListener {
     private static final char EMPTY = ' ';
     private static final char X = 'X';
     private static final char O = 'O';
+    // A 3x3 board has only a few thousand positions, so a small table will do
+    private static final long SOLVER_MEMORY = 256 << 10;
 
     private char[][] board;
     private boolean gameOver;
     private boolean humanTurn; // true if it's human's turn
     private char humanPlayer, aiPlayer;
+    private final ProofNumberSolver solver = new ProofNumberSolver(SIZE, SIZE, SOLVER_MEMORY);
 
     public TicTacToe() {
         board = new char[SIZE][SIZE];
@@ -168,6 +171,13 @@ public class TicTacToe extends Frame implements MouseListener {
         return bestMove;
     }
 
+    // Proves the current position for the side to move with the proof-number
+    // solver: won, lost or drawn under perfect play, with a winning line when
+    // there is one. Throws IllegalArgumentException once a line is complete.
+    public ProofNumberSolver.Result solvePosition() {
+        return solver.solve(board, humanTurn ? humanPlayer : aiPlayer);
+    }
+
     // AI move execution
     private void aiMove() {
         if (!gameOver && movesLeft()) {
@@ -0,0 +1,282 @@
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+// Checks ProofNumberSolver against a plain memoised minimax on boards small
+// enough to search exhaustively. There is no test framework in this
+// project, so this is a plain program: it prints each check and exits with
+// status 1 if any of them fails.
+//
+//   javac -d out ProofNumberSolver.java test/ProofNumberSolverTests.java
+//   java -cp out ProofNumberSolverTests
+public class ProofNumberSolverTests {
+
+    private static int failures;
+
+    public static void main(String[] args) {
+        run("everyPosition3x3", ProofNumberSolverTests::everyPosition3x3);
+        run("randomPositions4x4", () -> randomPositions(4, 3, 0, 300));
+        run("randomPositions4x4FourInARow", () -> randomPositions(4, 4, 6, 200));
+        run("randomPositions5x5", () -> randomPositions(5, 4, 13, 200));
+        run("nodeLimit", ProofNumberSolverTests::nodeLimit);
+        run("smallMemory", ProofNumberSolverTests::smallMemory);
+        run("rejectsBadInput", ProofNumberSolverTests::rejectsBadInput);
+        if (failures > 0) {
+            System.out.println(failures + " failed");
+            System.exit(1);
+        }
+        System.out.println("All passed");
+    }
+
+    private interface Check {
+        void run() throws Exception;
+    }
+
+    private static void run(String name, Check test) {
+        try {
+            test.run();
+            System.out.println("ok   " + name);
+        } catch (Exception | Error e) {
+            failures++;
+            System.out.println("FAIL " + name + ": " + e);
+        }
+    }
+
+    // Every position reachable in a 3x3 game that is not already over
+    private static void everyPosition3x3() {
+        ProofNumberSolver solver = new ProofNumberSolver(3, 3, 1 << 20);
+        BruteForce brute = new BruteForce(3, 3);
+        int checked = 0;
+        for (int code = 0; code < 19683; code++) {
+            char[][] board = new char[3][3];
+            int xs = 0, os = 0;
+            for (int cell = 0, rest = code; cell < 9; cell++, rest /= 3) {
+                char c = ".XO".charAt(rest % 3);
+                board[cell / 3][cell % 3] = c;
+                if (c == 'X') xs++;
+                else if (c == 'O') os++;
+            }
+            if (xs != os && xs != os + 1) continue;
+            if (brute.isOver(board)) continue;
+            checkSolve(solver, brute, board);
+            checked++;
+        }
+        check(checked > 4000, "checked " + checked + " positions");
+    }
+
+    // Positions reached by random play with at least minStones stones down,
+    // so the brute force stays quick
+    private static void randomPositions(int size, int k, int minStones, int count) {
+        ProofNumberSolver solver = new ProofNumberSolver(size, k, 1 << 22);
+        BruteForce brute = new BruteForce(size, k);
+        Random random = new Random(size * 31 + k);
+        for (int found = 0; found < count; ) {
+            char[][] board = randomBoard(random, size, minStones + random.nextInt(size * size - minStones));
+            if (brute.isOver(board)) continue;
+            checkSolve(solver, brute, board);
+            found++;
+        }
+    }
+
+    // A limited search either gives up or agrees with the brute force
+    private static void nodeLimit() {
+        BruteForce brute = new BruteForce(4, 3);
+        Random random = new Random(5);
+        int unknown = 0;
+        for (int i = 0; i < 200; i++) {
+            char[][] board = randomBoard(random, 4, random.nextInt(6));
+            if (brute.isOver(board)) continue;
+            ProofNumberSolver solver = new ProofNumberSolver(4, 3, 1 << 16);
+            solver.setNodeLimit(1 + random.nextInt(2000));
+            char toMove = toMove(board);
+            ProofNumberSolver.Result result = solver.solve(board, toMove);
+            if (result.outcome() == ProofNumberSolver.Outcome.UNKNOWN) {
+                unknown++;
+                continue;
+            }
+            check(result.outcome(), brute.solve(board, toMove));
+            checkLine(board, toMove, result, 4, 3, false);
+        }
+        check(unknown > 0, "some searches ran out of nodes");
+    }
+
+    // A table too small for the whole proof still gets the right answer
+    private static void smallMemory() {
+        ProofNumberSolver solver = new ProofNumberSolver(4, 3, 1 << 10);
+        char[][] board = randomBoard(new Random(0), 4, 0);
+        ProofNumberSolver.Result result = solver.solve(board, 'X');
+        check(result.outcome(), ProofNumberSolver.Outcome.WIN);
+        checkLine(board, 'X', result, 4, 3, true);
+    }
+
+    private static void rejectsBadInput() {
+        ProofNumberSolver solver = new ProofNumberSolver(3, 3);
+        checkThrows(() -> solver.solve(board("XXX", "OO.", "..."), 'O'));
+        checkThrows(() -> solver.solve(board("XX.", "OO.", "..."), '.'));
+        checkThrows(() -> solver.solve(new char[2][2], 'X'));
+    }
+
+    private static void checkSolve(ProofNumberSolver solver, BruteForce brute, char[][] board) {
+        char toMove = toMove(board);
+        ProofNumberSolver.Result result = solver.solve(board, toMove);
+        check(result.outcome(), brute.solve(board, toMove));
+        checkLine(board, toMove, result, board.length, brute.k, true);
+    }
+
+    // Plays out the principal line: every move lands on an empty cell, nobody
+    // wins early, and the last move completes line() for the winner
+    private static void checkLine(char[][] board, char toMove, ProofNumberSolver.Result result, int size, int k, boolean complete) {
+        int[][] moves = result.moves();
+        if (result.outcome() == ProofNumberSolver.Outcome.DRAW) {
+            check(moves.length == 0 && result.line().length == 0, "no line for a draw");
+            return;
+        }
+        if (!complete && result.line().length == 0) return;
+        char winner = result.outcome() == ProofNumberSolver.Outcome.WIN ? toMove : other(toMove);
+        check(moves.length > 0 && result.line().length == k, "a complete line of " + k + " for " + result);
+        char[][] play = copy(board);
+        BruteForce lines = new BruteForce(size, k);
+        char side = toMove;
+        for (int i = 0; i < moves.length; i++) {
+            check(!lines.isOver(play), "nobody wins before the end of " + result);
+            check(play[moves[i][0]][moves[i][1]] == '.', "move onto an empty cell in " + result);
+            play[moves[i][0]][moves[i][1]] = side;
+            side = other(side);
+        }
+        check(other(side) == winner, "the winner moves last in " + result);
+        for (int[] cell : result.line()) check(play[cell[0]][cell[1]] == winner, "line() belongs to the winner in " + result);
+    }
+
+    private static char[][] randomBoard(Random random, int size, int stones) {
+        char[][] board = new char[size][size];
+        for (char[] row : board) Arrays.fill(row, '.');
+        char side = 'X';
+        for (int i = 0; i < stones; i++) {
+            int row, col;
+            do {
+                row = random.nextInt(size);
+                col = random.nextInt(size);
+            } while (board[row][col] != '.');
+            board[row][col] = side;
+            side = other(side);
+        }
+        return board;
+    }
+
+    private static char toMove(char[][] board) {
+        int xs = 0, os = 0;
+        for (char[] row : board) {
+            for (char c : row) {
+                if (c == 'X') xs++;
+                else if (c == 'O') os++;
+            }
+        }
+        return xs > os ? 'O' : 'X';
+    }
+
+    private static char other(char side) {
+        return side == 'X' ? 'O' : 'X';
+    }
+
+    private static char[][] copy(char[][] board) {
+        char[][] result = new char[board.length][];
+        for (int row = 0; row < board.length; row++) result[row] = board[row].clone();
+        return result;
+    }
+
+    private static char[][] board(String... rows) {
+        char[][] board = new char[rows.length][];
+        for (int row = 0; row < rows.length; row++) board[row] = rows[row].toCharArray();
+        return board;
+    }
+
+    // Exhaustive minimax with a memo of every position seen, keyed by the
+    // two players' cell masks
+    private static final class BruteForce {
+        final int size, k;
+        private final Map<Long, Integer> memo = new HashMap<>();
+
+        BruteForce(int size, int k) {
+            this.size = size;
+            this.k = k;
+        }
+
+        ProofNumberSolver.Outcome solve(char[][] board, char toMove) {
+            long mine = 0, theirs = 0;
+            for (int row = 0; row < size; row++) {
+                for (int col = 0; col < size; col++) {
+                    long bit = 1L << (row * size + col);
+                    if (board[row][col] == toMove) mine |= bit;
+                    else if (board[row][col] == other(toMove)) theirs |= bit;
+                }
+            }
+            int value = value(mine, theirs);
+            return value > 0 ? ProofNumberSolver.Outcome.WIN : value < 0 ? ProofNumberSolver.Outcome.LOSS : ProofNumberSolver.Outcome.DRAW;
+        }
+
+        // +1 if the side owning mine (to move) wins, -1 if it loses, 0 for a draw
+        private int value(long mine, long theirs) {
+            long full = size * size == 64 ? -1L : (1L << (size * size)) - 1;
+            if ((mine | theirs) == full) return 0;
+            long key = mine | theirs << (size * size);
+            Integer known = memo.get(key);
+            if (known != null) return known;
+            int best = -1;
+            for (int cell = 0; cell < size * size && best < 1; cell++) {
+                long bit = 1L << cell;
+                if (((mine | theirs) & bit) != 0) continue;
+                int value = hasLine(mine | bit) ? 1 : -value(theirs, mine | bit);
+                best = Math.max(best, value);
+            }
+            memo.put(key, best);
+            return best;
+        }
+
+        boolean isOver(char[][] board) {
+            for (char side : new char[] {'X', 'O'}) {
+                long stones = 0;
+                for (int row = 0; row < size; row++) {
+                    for (int col = 0; col < size; col++) {
+                        if (board[row][col] == side) stones |= 1L << (row * size + col);
+                    }
+                }
+                if (hasLine(stones)) return true;
+            }
+            return false;
+        }
+
+        private boolean hasLine(long stones) {
+            int[][] directions = {{0, 1}, {1, 0}, {1, 1}, {1, -1}};
+            for (int row = 0; row < size; row++) {
+                for (int col = 0; col < size; col++) {
+                    for (int[] d : directions) {
+                        int endRow = row + d[0] * (k - 1), endCol = col + d[1] * (k - 1);
+                        if (endRow < 0 || endRow >= size || endCol < 0 || endCol >= size) continue;
+                        int n = 0;
+                        while (n < k && (stones & 1L << ((row + d[0] * n) * size + col + d[1] * n)) != 0) n++;
+                        if (n == k) return true;
+                    }
+                }
+            }
+            return false;
+        }
+    }
+
+    private static void check(Object actual, Object expected) {
+        if (!actual.equals(expected)) throw new AssertionError("expected " + expected + " but got " + actual);
+    }
+
+    private static void check(boolean condition, String what) {
+        if (!condition) throw new AssertionError(what);
+    }
+
+    private static void checkThrows(Runnable action) {
+        try {
+            action.run();
+        } catch (IllegalArgumentException expected) {
+            return;
+        }
+        throw new AssertionError("expected IllegalArgumentException");
+    }
+}